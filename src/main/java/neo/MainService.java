@@ -6,25 +6,27 @@ import com.google.gson.JsonArray;
 import org.apache.commons.lang3.StringUtils;
 import org.bouncycastle.crypto.CryptoException;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 import akka.actor.ActorRef;
@@ -34,7 +36,6 @@ import neo.consensus.ConsensusService;
 import neo.cryptography.ecc.ECC;
 import neo.cryptography.ecc.ECPoint;
 import neo.csharp.BitConverter;
-import neo.csharp.Out;
 import neo.csharp.Uint;
 import neo.csharp.Ushort;
 import neo.csharp.io.ISerializable;
@@ -44,6 +45,7 @@ import neo.ledger.AssetState;
 import neo.ledger.Blockchain;
 import neo.ledger.CoinState;
 import neo.ledger.ContractPropertyState;
+import neo.ledger.RelayResultReason;
 import neo.log.notr.TR;
 import neo.network.p2p.LocalNode;
 import neo.network.p2p.Message;
@@ -64,9 +66,30 @@ import neo.network.p2p.payloads.TransactionOutput;
 import neo.network.p2p.payloads.Witness;
 import neo.persistence.leveldb.LevelDBStore;
 import neo.plugins.Plugin;
+import neo.services.CommandRegistry;
 import neo.services.ConsoleHelper;
 import neo.services.ConsoleServiceBase;
+import neo.shell.AccountIndex;
+import neo.shell.AddressGenerator;
+import neo.shell.AssetBalances;
+import neo.shell.BatchKeyGenerator;
+import neo.shell.BatchPayout;
+import neo.shell.BonusTracker;
+import neo.shell.ClaimPacker;
 import neo.shell.Coins;
+import neo.shell.KeyExporter;
+import neo.shell.KeyImporter;
+import neo.shell.MemPoolTracker;
+import neo.shell.NodeMetrics;
+import neo.shell.PersistObserver;
+import neo.shell.StateDashboard;
+import neo.shell.SweepEngine;
+import neo.shell.SweepJob;
+import neo.shell.SyncMonitor;
+import neo.shell.TransactionSubmitter;
+import neo.shell.UtxoIndex;
+import neo.shell.UtxoView;
+import neo.shell.WalletObserver;
 import neo.smartcontract.ApplicationEngine;
 import neo.smartcontract.Contract;
 import neo.smartcontract.ContractParameter;
@@ -93,10 +116,36 @@ import static org.checkerframework.checker.units.UnitsTools.g;
  */
 public class MainService extends ConsoleServiceBase {
     private final static String peerStatePath = "peers.dat";
+    private final static int STATE_MAX_PEERS = 40;
+    private final static int POOL_DEFAULT_LIMIT = 50;
+    private final static int POOL_REFRESH_SECONDS = 2;
+    private final static int POOL_IDLE_SECONDS = 300;
+    private final static int POOL_FULL_REFRESH_SECONDS = 30;
 
     private LevelDBStore store;
     private NeoSystem system;
     private WalletIndexer indexer;
+    private PersistObserver persistObserver;
+    private BonusTracker bonusTracker;
+    private TransactionSubmitter submitter;
+    private SweepJob sweepJob;
+    private UtxoIndex utxoIndex;
+    private AssetBalances assetBalances;
+    private AccountIndex accountIndex;
+    private WalletObserver walletObserver;
+    private NodeMetrics nodeMetrics;
+    private SyncMonitor syncMonitor;
+    private MemPoolTracker memPoolTracker;
+
+    @Override
+    protected int getControlPort() {
+        return Settings.getDefaultInstance().getDaemon().getPort();
+    }
+
+    @Override
+    protected int getControlMaxConnections() {
+        return Settings.getDefaultInstance().getDaemon().getMaxConnections();
+    }
 
     @Override
     protected String getPrompt() {
@@ -114,61 +163,177 @@ public class MainService extends ConsoleServiceBase {
         return indexer;
     }
 
+    private synchronized BonusTracker getBonusTracker() {
+        if (bonusTracker != null && bonusTracker.getWallet() != Program.wallet) {
+            bonusTracker.dispose();
+            bonusTracker = null;
+        }
+        if (bonusTracker == null)
+            bonusTracker = new BonusTracker(getWalletObserver(), persistObserver);
+        return bonusTracker;
+    }
+
+    private synchronized AccountIndex getAccountIndex() {
+        if (accountIndex == null || accountIndex.getWallet() != Program.wallet)
+            accountIndex = new AccountIndex(Program.wallet);
+        return accountIndex;
+    }
+
+    /**
+     * 批量创建或导入账户后调用，账户相关的索引下次使用时重新加载
+     */
+    private void onAccountsChanged() {
+        if (accountIndex != null) accountIndex.invalidate();
+        if (utxoIndex != null) utxoIndex.invalidate();
+        if (assetBalances != null) assetBalances.invalidate();
+    }
+
+    /**
+     * 创建或导入单个账户后调用，账户索引直接加入，其它索引下次使用时重新加载
+     */
+    private void onAccountAdded(WalletAccount account) {
+        getAccountIndex().add(account);
+        if (utxoIndex != null) utxoIndex.invalidate();
+        if (assetBalances != null) assetBalances.invalidate();
+    }
+
+    private synchronized AssetBalances getAssetBalances() {
+        if (assetBalances != null && assetBalances.getWallet() != Program.wallet) {
+            assetBalances.dispose();
+            assetBalances = null;
+        }
+        if (assetBalances == null)
+            assetBalances = new AssetBalances(getWalletObserver(), persistObserver);
+        return assetBalances;
+    }
+
+    private synchronized UtxoIndex getUtxoIndex() {
+        if (utxoIndex != null && utxoIndex.getWallet() != Program.wallet) {
+            utxoIndex.dispose();
+            utxoIndex = null;
+        }
+        if (utxoIndex == null)
+            utxoIndex = new UtxoIndex(getWalletObserver(), persistObserver);
+        return utxoIndex;
+    }
+
+    private synchronized WalletObserver getWalletObserver() {
+        if (walletObserver != null && walletObserver.getWallet() != Program.wallet) {
+            walletObserver.dispose();
+            walletObserver = null;
+        }
+        if (walletObserver == null)
+            walletObserver = new WalletObserver(Program.wallet);
+        return walletObserver;
+    }
+
+    /**
+     * 通知后台维护的钱包统计：钱包中的币因本地交易发生了变化
+     */
+    private void onWalletChanged() {
+        if (bonusTracker != null) bonusTracker.invalidate();
+    }
+
+    private SweepEngine newSweepEngine() {
+        return new SweepEngine(Program.wallet, submitter, Settings.getDefaultInstance().getSweep()
+                .getMaxTransactionSize(), Runtime.getRuntime().availableProcessors());
+    }
+
     private static boolean noWallet() {
         if (Program.wallet != null) return false;
-        ConsoleHelper.writeLine("You have to open the wallet first.");
+        ConsoleHelper.writeError("You have to open the wallet first.");
         return true;
     }
 
+    public MainService() {
+        String wallet = "Wallet Commands", contract = "Contract Commands", node = "Node Commands";
+        CommandRegistry commands = getCommands();
+        commands.register("create", "wallet", this::onCreateWalletCommand).usage(wallet,
+                "create wallet <path>").arity(3, 3);
+        commands.register("open", "wallet", this::OnOpenWalletCommand).usage(wallet, "open wallet <path>")
+                .arity(3, 3);
+        commands.register("upgrade", "wallet", this::onUpgradeWalletCommand).usage(wallet,
+                "upgrade wallet <path>").arity(3, 3);
+        commands.register("rebuild", "index", this::onRebuildIndexCommand).usage(wallet, "rebuild index")
+                .arity(2, 2);
+        commands.register("list", "address", this::onListAddressCommand).usage(wallet, "list address")
+                .readOnly().needsWallet().arity(2, 2);
+        commands.register("list", "asset", this::onListAssetCommand).usage(wallet, "list asset")
+                .readOnly().needsWallet().arity(2, 2);
+        commands.register("list", "key", this::onListKeyCommand).usage(wallet, "list key")
+                .readOnly().needsWallet().arity(2, 2);
+        commands.register("show", "utxo", this::onShowUtxoCommand).usage(wallet,
+                "show utxo [id|alias] [--offset n] [--limit m] [--min value] [--sort value|height]")
+                .readOnly().needsWallet();
+        commands.register("show", "gas", this::onShowGasCommand).usage(wallet, "show gas [address|verify]")
+                .readOnly().needsWallet().arity(2, 3);
+        commands.register("claim", "gas", this::onClaimCommand).usage(wallet,
+                "claim gas [all] [changeAddress]", "claim gas plan").needsWallet().arity(2, 4);
+        commands.register("create", "address", this::onCreateAddressCommand).usage(wallet,
+                "create address [n=1] [--sequential]").needsWallet().arity(2, 4);
+        commands.register("import", "key", this::onImportKeyCommand).usage(wallet, "import key <wif|path>")
+                .needsWallet().arity(3, 3);
+        commands.register("export", "key", this::onExportKeyCommand).usage(wallet,
+                "export key [address] [path] [--nep2]").needsWallet().arity(2, 5);
+        commands.register("import", "multisigaddress", this::onImportMultisigAddress).usage(wallet,
+                "import multisigaddress m pubkeys...").needsWallet();
+        commands.register("send", this::onSendCommand).usage(wallet,
+                "send <id|alias> <address> <value>|all [fee=0]").needsWallet().arity(4, 5);
+        commands.register("send", "batch", this::onSendBatchCommand).usage(wallet,
+                "send batch <file.csv> [fee=0]").needsWallet().arity(3, 4);
+        commands.register("sign", this::onSignCommand).usage(wallet, "sign <jsonObjectToSign>").needsWallet();
+        commands.register("start", "sweep", this::onStartSweepCommand).usage(wallet,
+                "start sweep <id|alias> <maxValue>").needsWallet().arity(4, 4);
+        commands.register("stop", "sweep", this::onStopSweepCommand).usage(wallet, "stop sweep").arity(2, 2);
+        commands.register("show", "sweep", this::onShowSweepCommand).usage(wallet, "show sweep").readOnly()
+                .arity(2, 2);
+        commands.register("deploy", this::onDeployCommand).usage(contract, "deploy <avmFilePath> " +
+                "<paramTypes> <returnTypeHexString> <hasStorage (true|false)> <hasDynamicInvoke (true|false)> " +
+                "<isPayable (true|false) <contractName> <contractVersion> <contractAuthor> <contractEmail> " +
+                "<contractDescription>").needsWallet().arity(12, 12);
+        // --test只在本地执行，不签名也不发送，可以和其它只读命令并行
+        commands.register("invoke", this::onInvokeCommand).usage(contract, "invoke <scripthash> <command> " +
+                "[optionally quoted params separated by space] [--test]").readOnlyWhen(args -> args[args
+                .length - 1].equalsIgnoreCase("--test")).arity(3, Integer.MAX_VALUE);
+        commands.register("show", "state", this::onShowStateCommand).usage(node, "show state").readOnly()
+                .arity(2, 2);
+        commands.register("show", "sync", this::onShowSyncCommand).usage(node, "show sync").readOnly()
+                .arity(2, 2);
+        commands.register("show", "pool", this::onShowPoolCommand).usage(node, "show pool [verbose] [--type " +
+                "<type>] [--limit <n>] [--sort fee|size|tracked]", "show pool stats").readOnly();
+        commands.register("relay", this::onRelayCommand).usage(node, "relay <jsonObjectToSign>");
+        commands.register("plugins", this::onPluginsCommand).usage("Plugin Commands", "plugins").readOnly()
+                .arity(1, 1);
+        commands.register("install", this::onInstallCommand).usage("Plugin Commands", "install <pluginName>");
+        commands.register("uninstall", this::onUnInstallCommand).usage("Plugin Commands",
+                "uninstall <pluginName>");
+        commands.register("start", "consensus", this::onStartConsensusCommand).usage("Advanced Commands",
+                "start consensus").needsWallet().arity(2, 2);
+        commands.register("broadcast", this::onBroadcastCommand).arity(2, Integer.MAX_VALUE);
+        commands.register("change", "view", this::onChangeViewCommand).arity(3, 3);
+    }
+
+    /**
+     * 内置命令之外的命令交给插件处理
+     */
     @Override
-    protected boolean onCommand(String[] args) {
+    protected boolean onUnknownCommand(String[] args) {
         if (Plugin.sendMessage(args)) return true;
-        switch (args[0].toLowerCase()) {
-            case "broadcast":
-                return onBroadcastCommand(args);
-            case "relay":
-                return onRelayCommand(args);
-            case "sign":
-                return onSignCommand(args);
-            case "change":
-                return onChangeCommand(args);
-            case "create":
-                return OnCreateCommand(args);
-            case "export":
-                return onExportCommand(args);
-            case "help":
-                return OnHelpCommand(args);
-            case "plugins":
-                return onPluginsCommand(args);
-            case "import":
-                return onImportCommand(args);
-            case "list":
-                return onListCommand(args);
-            case "claim":
-                return onClaimCommand(args);
-            case "open":
-                return onOpenCommand(args);
-            case "rebuild":
-                return OnRebuildCommand(args);
-            case "send":
-                return onSendCommand(args);
-            case "show":
-                return onShowCommand(args);
-            case "start":
-                return onStartCommand(args);
-            case "upgrade":
-                return onUpgradeCommand(args);
-            case "deploy":
-                return onDeployCommand(args);
-            case "invoke":
-                return onInvokeCommand(args);
-            case "install":
-                return onInstallCommand(args);
-            case "uninstall":
-                return onUnInstallCommand(args);
-            default:
-                return super.onCommand(args);
-        }
+        return super.onUnknownCommand(args);
+    }
+
+    @Override
+    protected boolean checkWallet() {
+        return !noWallet();
+    }
+
+    /**
+     * help <plugin-name>由插件输出自己的帮助
+     */
+    @Override
+    protected boolean onHelpCommand(String[] args) {
+        if (args.length > 1 && Plugin.sendMessage(args)) return true;
+        return super.onHelpCommand(args);
     }
 
     private boolean onBroadcastCommand(String[] args) {
@@ -227,7 +392,7 @@ public class MainService extends ConsoleServiceBase {
             case "reject":
             case "verack":
             case "version":
-                ConsoleHelper.writeLine(String.format("Command \"{0}\" is not supported.", command));
+                ConsoleHelper.writeError(String.format("Command \"{0}\" is not supported.", command));
                 return true;
         }
         system.localNode.tell(Message.create(command, payload), ActorRef.noSender());
@@ -235,7 +400,6 @@ public class MainService extends ConsoleServiceBase {
     }
 
     private boolean onDeployCommand(String[] args) {
-        if (noWallet()) return true;
         InvocationTransaction tx = loadScriptTransaction(
                 /* filePath */ args[1],
                 /* paramTypes */ args[2],
@@ -268,7 +432,7 @@ public class MainService extends ConsoleServiceBase {
         //LINQ END
         ConsoleHelper.writeLine(sb.toString());
         if (engine.state.hasFlag(VMState.FAULT)) {
-            ConsoleHelper.writeLine("Engine faulted.");
+            ConsoleHelper.writeError("Engine faulted.");
             return true;
         }
 
@@ -282,6 +446,9 @@ public class MainService extends ConsoleServiceBase {
     }
 
     private boolean onInvokeCommand(String[] args) {
+        // --test只在本地执行脚本并输出结果，不签名也不发送
+        boolean test = args[args.length - 1].equalsIgnoreCase("--test");
+        if (test) args = Arrays.copyOf(args, args.length - 1);
         UInt160 scriptHash = UInt160.parse(args[1]);
 
         List<ContractParameter> contractParameters = new ArrayList<ContractParameter>();
@@ -328,9 +495,10 @@ public class MainService extends ConsoleServiceBase {
         sb.append(String.format("Evaluation Stack: {0}", array.toString()));
         ConsoleHelper.writeLine(sb.toString());
         if (engine.state.hasFlag(VMState.FAULT)) {
-            ConsoleHelper.writeLine("Engine faulted.");
+            ConsoleHelper.writeError("Engine faulted.");
             return true;
         }
+        if (test) return true;
 
         tx = decorateScriptTransaction(tx);
         return signAndSendTx(tx);
@@ -401,32 +569,46 @@ public class MainService extends ConsoleServiceBase {
     public boolean signAndSendTx(InvocationTransaction tx) {
         ContractParametersContext context;
         try {
-            context = new ContractParametersContext(tx);
+            context = submitter.sign(Program.wallet, tx);
         } catch (InvalidOperationException ex) {
-            ConsoleHelper.writeLine(String.format("Error creating contract params: {0}", ex));
+            ConsoleHelper.writeError(String.format("Error creating contract params: %s", ex));
             throw ex;
         }
-        Program.wallet.sign(context);
         String msg;
         if (context.completed()) {
-            context.verifiable.setWitnesses(context.getWitnesses());
-            Program.wallet.applyTransaction(tx);
-            LocalNode.Relay relay = new LocalNode.Relay();
-            relay.inventory = tx;
-            system.localNode.tell(relay, ActorRef.noSender());
-            msg = String.format("Signed and relayed transaction with hash={0}", tx.hash());
-            ConsoleHelper.writeLine(msg);
+            onWalletChanged();
+            RelayResultReason reason = awaitRelay(tx);
+            if (reason == RelayResultReason.Succeed) {
+                msg = String.format("Signed and relayed transaction with hash=%s", tx.hash());
+                ConsoleHelper.writeLine(msg);
+            } else {
+                msg = String.format("Signed transaction with hash=%s, relay result: %s", tx.hash(), reason);
+                ConsoleHelper.writeError(msg);
+            }
             return true;
         }
 
         msg = String.format("Failed sending transaction with hash={0}", tx.hash());
-        ConsoleHelper.writeLine(msg);
+        ConsoleHelper.writeError(msg);
         return true;
     }
 
+    /**
+     * 等待relay结果，失败时输出原因并返回null
+     */
+    private RelayResultReason awaitRelay(Transaction tx) {
+        try {
+            return submitter.relay(tx).join();
+        } catch (CompletionException e) {
+            ConsoleHelper.writeError(String.format("Failed to relay transaction %s: %s", tx.hash(), e
+                    .getCause()));
+            return null;
+        }
+    }
+
     private boolean onRelayCommand(String[] args) {
         if (args.length < 2) {
-            ConsoleHelper.writeLine("You must input JSON object to relay.");
+            ConsoleHelper.writeError("You must input JSON object to relay.");
             return true;
         }
         //LINQ START
@@ -435,13 +617,13 @@ public class MainService extends ConsoleServiceBase {
                 (String[]::new), "");
         //LINQ END
         if (Strings.isNullOrEmpty(jsonObjectToRelay)) {
-            ConsoleHelper.writeLine("You must input JSON object to relay.");
+            ConsoleHelper.writeError("You must input JSON object to relay.");
             return true;
         }
         try {
             ContractParametersContext context = ContractParametersContext.parse(jsonObjectToRelay);
             if (!context.completed()) {
-                ConsoleHelper.writeLine("The signature is incomplete.");
+                ConsoleHelper.writeError("The signature is incomplete.");
                 return true;
             }
             context.verifiable.setWitnesses(context.getWitnesses());
@@ -452,17 +634,15 @@ public class MainService extends ConsoleServiceBase {
             ConsoleHelper.writeLine(String.format("Data relay success, the hash is shown as " +
                     "follows:\r\n{0}", inventory.hash()));
         } catch (Exception e) {
-            ConsoleHelper.writeLine(String.format("One or more errors occurred:\r\n{0}", e
+            ConsoleHelper.writeError(String.format("One or more errors occurred:\r\n{0}", e
                     .getMessage()));
         }
         return true;
     }
 
     private boolean onSignCommand(String[] args) {
-        if (noWallet()) return true;
-
         if (args.length < 2) {
-            ConsoleHelper.writeLine("You must input JSON object pending signature data.");
+            ConsoleHelper.writeError("You must input JSON object pending signature data.");
             return true;
         }
         //LINQ START
@@ -471,31 +651,22 @@ public class MainService extends ConsoleServiceBase {
                 (String[]::new), "");
         //LINQ END
         if (Strings.isNullOrEmpty(jsonObjectToSign)) {
-            ConsoleHelper.writeLine("You must input JSON object pending signature data.");
+            ConsoleHelper.writeError("You must input JSON object pending signature data.");
             return true;
         }
         try {
             ContractParametersContext context = ContractParametersContext.parse(jsonObjectToSign);
-            if (!Program.wallet.sign(context)) {
-                ConsoleHelper.writeLine("The private key that can sign the data is not found.");
+            if (!getAccountIndex().sign(context)) {
+                ConsoleHelper.writeError("The private key that can sign the data is not found.");
                 return true;
             }
             ConsoleHelper.writeLine(String.format("Signed Output:\r\n{0}", context));
         } catch (Exception e) {
-            ConsoleHelper.writeLine(String.format("One or more errors occurred:\r\n{0}", e.getMessage()));
+            ConsoleHelper.writeError(String.format("One or more errors occurred:\r\n{0}", e.getMessage()));
         }
         return true;
     }
 
-    private boolean onChangeCommand(String[] args) {
-        switch (args[1].toLowerCase()) {
-            case "view":
-                return onChangeViewCommand(args);
-            default:
-                return super.onCommand(args);
-        }
-    }
-
     private boolean onChangeViewCommand(String[] args) {
         if (args.length != 3) return false;
         try {
@@ -511,92 +682,61 @@ public class MainService extends ConsoleServiceBase {
         }
     }
 
-    private boolean OnCreateCommand(String[] args) {
-        switch (args[1].toLowerCase()) {
-            case "address":
-                return onCreateAddressCommand(args);
-            case "wallet":
-                return onCreateWalletCommand(args);
-            default:
-                return super.onCommand(args);
-        }
-    }
-
     private boolean onCreateAddressCommand(String[] args) {
-        if (noWallet()) return true;
+        // --sequential逐个调用createAccount，用于和批量生成比较速度
+        boolean sequential = args.length >= 3 && args[args.length - 1].equalsIgnoreCase("--sequential");
+        if (sequential) args = Arrays.copyOf(args, args.length - 1);
         if (args.length > 3) {
-            ConsoleHelper.writeLine("error");
+            ConsoleHelper.writeError("error");
             return true;
         }
 
-        Ushort count;
-        if (args.length >= 3)
-            count = Ushort.parseUshort(args[2]);
-        else
-            count = Ushort.ONE;
-
-        final Set<Integer> set = new HashSet<Integer>();
-        List<String> addresses = new ArrayList<String>();
-        //LINQ START
-        IntStream.rangeClosed(0, count.intValue()).parallel().forEach(p -> {
-            WalletAccount account = Program.wallet.createAccount();
-
-            synchronized (addresses) {
-                set.add(p);
-                addresses.add(account.getAddress());
-                // TODO: 2019/4/17 控制台光标移动，暂时不需要
-                //Console.SetCursorPosition(0, Console.CursorTop);
-                ConsoleHelper.write(String.format("[{0}/{1}]", set.size(), count));
-            }
-        });
-
-/*        Parallel.For(0, count, (i) = >
-                {
-                        WalletAccount account = Program.wallet.createAccount();
-
-        synchronized (addresses) {
-            x++;
-            addresses.add(account.address);
-            // TODO: 2019/4/17 控制台光标移动，暂时不需要
-            //Console.SetCursorPosition(0, Console.CursorTop);
-            ConsoleHelper.write(String.format("[{0}/{1}]", x, count));
-        }});*/
-        //LINQ END
+        int count;
+        try {
+            count = args.length >= 3 ? Integer.parseInt(args[2]) : 1;
+        } catch (NumberFormatException e) {
+            count = 0;
+        }
+        if (count <= 0) {
+            ConsoleHelper.writeError("error");
+            return true;
+        }
 
-        if (Program.wallet instanceof NEP6Wallet)
-            ((NEP6Wallet) Program.wallet).save();
-        ConsoleHelper.writeLine();
         String path = "address.txt";
-        ConsoleHelper.writeLine(String.format("export addresses to {0}", path));
-        try {
-            Files.write(new File(path).toPath(), addresses);
+        AddressGenerator generator = new AddressGenerator(Program.wallet, sequential ?
+                AddressGenerator.SEQUENTIAL : new BatchKeyGenerator(),
+                Runtime.getRuntime().availableProcessors(), 10000, 500);
+        double rate;
+        try (BufferedWriter writer = Files.newBufferedWriter(new File(path).toPath())) {
+            rate = generator.generate(count, writer, (created, total, keysPerSecond) ->
+                    ConsoleHelper.write(String.format("\r[%d/%d] %.0f keys/s", created, total,
+                            keysPerSecond)));
         } catch (IOException e) {
-            e.printStackTrace();
             TR.warn(e);
             throw new RuntimeException(e);
         }
+        onAccountsChanged();
+        ConsoleHelper.writeLine();
+        ConsoleHelper.writeLine(String.format("export addresses to %s, %.0f keys/s", path, rate));
         return true;
     }
 
     private boolean onCreateWalletCommand(String[] args) {
-        if (args.length < 3) {
-            ConsoleHelper.writeLine("error");
-            return true;
-        }
         String path = args[2];
         String password = readPassword("password");
         if (password.length() == 0) {
-            ConsoleHelper.writeLine("cancelled");
+            ConsoleHelper.writeError("cancelled");
             return true;
         }
         String password2 = readPassword("password");
         if (!password.equals(password2)) {
-            ConsoleHelper.writeLine("error");
+            ConsoleHelper.writeError("error");
             return true;
         }
         String fileName = new File(path).getName();
         switch (fileName.substring(fileName.lastIndexOf("."), fileName.length())) {
             case ".db3": {
+                stopSweepForWalletChange();
                 Program.wallet = UserWallet.create(getIndexer(), path, password);
                 WalletAccount account = Program.wallet.createAccount();
                 ConsoleHelper.writeLine(String.format("address: {0}", account.getAddress()));
@@ -611,6 +751,7 @@ public class MainService extends ConsoleServiceBase {
                 wallet.unlock(password);
                 WalletAccount account = wallet.createAccount();
                 wallet.save();
+                stopSweepForWalletChange();
                 Program.wallet = wallet;
                 ConsoleHelper.writeLine(String.format("address: {0}", account.getAddress()));
                 ConsoleHelper.writeLine(String.format(" pubkey: {0}", BitConverter.toHexString(account.getKey
@@ -620,25 +761,17 @@ public class MainService extends ConsoleServiceBase {
             }
             break;
             default:
-                ConsoleHelper.writeLine("Wallet files in that format are not supported, please use a .json or .db3 file extension.");
+                ConsoleHelper.writeError("Wallet files in that format are not supported, please use a .json or .db3 file extension.");
                 break;
         }
         return true;
     }
 
-    private boolean onExportCommand(String[] args) {
-        switch (args[1].toLowerCase()) {
-            case "key":
-                return onExportKeyCommand(args);
-            default:
-                return super.onCommand(args);
-        }
-    }
-
     private boolean onExportKeyCommand(String[] args) {
-        if (noWallet()) return true;
+        boolean nep2 = args.length >= 3 && args[args.length - 1].equalsIgnoreCase("--nep2");
+        if (nep2) args = Arrays.copyOf(args, args.length - 1);
         if (args.length < 2 || args.length > 4) {
-            ConsoleHelper.writeLine("error");
+            ConsoleHelper.writeError("error");
             return true;
         }
         UInt160 scriptHash = null;
@@ -655,86 +788,54 @@ public class MainService extends ConsoleServiceBase {
         }
         String password = readPassword("password");
         if (password.length() == 0) {
-            ConsoleHelper.writeLine("cancelled");
+            ConsoleHelper.writeError("cancelled");
             return true;
         }
         if (!Program.wallet.verifyPassword(password)) {
-            ConsoleHelper.writeLine("Incorrect password");
+            ConsoleHelper.writeError("Incorrect password");
             return true;
         }
-        //LINQ START
-/*        IEnumerable<KeyPair> keys;
-        if (scriptHash == null)
-            keys = Program.wallet.getAccounts().Where(p = > p.HasKey).Select(p = > p.GetKey());
-            else
-        keys = new[]{
-            Program.wallet.getAccount(scriptHash).GetKey()
-        } ;
-        if (path == null)
-            for (KeyPair key : keys)
-                ConsoleHelper.writeLine(key.export());
-        else
-            File.WriteAllLines(path, keys.Select(p = > p.Export()));*/
-        KeyPair[] keys;
-        if (scriptHash == null)
-            keys = StreamSupport.stream(Program.wallet.getAccounts().spliterator(), false).filter
-                    (p -> p.hasKey()).map(p -> p.getKey()).toArray(KeyPair[]::new);
-        else
-            keys = new KeyPair[]{Program.wallet.getAccount(scriptHash).getKey()};
-        if (path == null)
-            for (KeyPair key : keys)
-                ConsoleHelper.writeLine(key.export());
-        else
-            try {
-                Files.write(new File(path).toPath(), Arrays.asList(keys).stream().map(p -> p.export())
-                        .collect(Collectors.toList()));
-            } catch (IOException e) {
-                e.printStackTrace();
-                TR.warn(e);
-                throw new RuntimeException(e);
+        String passphrase = null;
+        if (nep2) {
+            passphrase = readPassword("nep2 password");
+            if (passphrase.length() == 0) {
+                ConsoleHelper.writeError("cancelled");
+                return true;
             }
-        //LINQ END
-        return true;
-    }
-
-    private boolean OnHelpCommand(String[] args) {
-        ConsoleHelper.write(
-                "Normal Commands:\n" +
-                        "\tversion\n" +
-                        "\thelp [plugin-name]\n" +
-                        "\tclear\n" +
-                        "\texit\n" +
-                        "Wallet Commands:\n" +
-                        "\tcreate wallet <path>\n" +
-                        "\topen wallet <path>\n" +
-                        "\tupgrade wallet <path>\n" +
-                        "\trebuild index\n" +
-                        "\tlist address\n" +
-                        "\tlist asset\n" +
-                        "\tlist key\n" +
-                        "\tshow utxo [id|alias]\n" +
-                        "\tshow gas\n" +
-                        "\tclaim gas [all] [changeAddress]\n" +
-                        "\tcreate address [n=1]\n" +
-                        "\timport key <wif|path>\n" +
-                        "\texport key [address] [path]\n" +
-                        "\timport multisigaddress m pubkeys...\n" +
-                        "\tsend <id|alias> <address> <value>|all [fee=0]\n" +
-                        "\tsign <jsonObjectToSign>\n" +
-                        "Contract Commands:\n" +
-                        "\tdeploy <avmFilePath> <paramTypes> <returnTypeHexString> <hasStorage (true|false)> <hasDynamicInvoke (true|false)> <isPayable (true|false) <contractName> <contractVersion> <contractAuthor> <contractEmail> <contractDescription>\n" +
-                        "\tinvoke <scripthash> <command> [optionally quoted params separated by space]\n" +
-                        "Node Commands:\n" +
-                        "\tshow state\n" +
-                        "\tshow pool [verbose]\n" +
-                        "\trelay <jsonObjectToSign>\n" +
-                        "Plugin Commands:\n" +
-                        "\tplugins\n" +
-                        "\tinstall <pluginName>\n" +
-                        "\tuninstall <pluginName>\n" +
-                        "Advanced Commands:\n" +
-                        "\tstart consensus\n");
-
+            if (!passphrase.equals(readPassword("re-enter nep2 password"))) {
+                ConsoleHelper.writeError("error");
+                return true;
+            }
+        }
+        Iterable<WalletAccount> accounts = Program.wallet.getAccounts();
+        if (scriptHash != null) {
+            WalletAccount account = getAccountIndex().get(scriptHash);
+            if (account == null) {
+                ConsoleHelper.writeError("Account not found");
+                return true;
+            }
+            accounts = Collections.singletonList(account);
+        }
+        // 解密和NEP-2加密都要做scrypt，放到线程池上并按账户顺序输出
+        KeyExporter exporter = new KeyExporter(Runtime.getRuntime().availableProcessors());
+        if (path == null) {
+            exporter.run(accounts, passphrase, ConsoleHelper::writeLine);
+            return true;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(new File(path).toPath())) {
+            int count = exporter.run(accounts, passphrase, p -> {
+                try {
+                    writer.write(p);
+                    writer.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            ConsoleHelper.writeLine(String.format("export %d keys to %s", count, path));
+        } catch (IOException | UncheckedIOException e) {
+            TR.warn(e);
+            throw new RuntimeException(e);
+        }
         return true;
     }
 
@@ -748,22 +849,9 @@ public class MainService extends ConsoleServiceBase {
         return true;
     }
 
-    private boolean onImportCommand(String[] args) {
-        switch (args[1].toLowerCase()) {
-            case "key":
-                return onImportKeyCommand(args);
-            case "multisigaddress":
-                return onImportMultisigAddress(args);
-            default:
-                return super.onCommand(args);
-        }
-    }
-
     private boolean onImportMultisigAddress(String[] args) {
-        if (noWallet()) return true;
-
         if (args.length < 5) {
-            ConsoleHelper.writeLine("Error. Use at least 2 public keys to create a multisig address.");
+            ConsoleHelper.writeError("Error. Use at least 2 public keys to create a multisig address.");
             return true;
         }
 
@@ -771,7 +859,7 @@ public class MainService extends ConsoleServiceBase {
         int n = args.length - 3;
 
         if (m < 1 || m > n || n > 1024) {
-            ConsoleHelper.writeLine("Error. Invalid parameters.");
+            ConsoleHelper.writeError("Error. Invalid parameters.");
             return true;
         }
         //LINQ START
@@ -786,13 +874,15 @@ public class MainService extends ConsoleServiceBase {
                 ECC.Secp256r1.getCurve())).toArray(ECPoint[]::new);
 
         Contract multiSignContract = Contract.createMultiSigContract(m, publicKeys);
-        WalletAccount walletAccount = StreamSupport.stream(Program.wallet.getAccounts().spliterator
-                (), false).filter(p -> p.hasKey() && Arrays.asList(publicKeys).contains(p.getKey().publicKey))
-                .findFirst().orElse(null);
+        // 按公钥查索引，不再对每个账户解密私钥后逐个比较
+        AccountIndex index = getAccountIndex();
+        WalletAccount walletAccount = Arrays.stream(publicKeys).map(index::get).filter(p -> p !=
+                null).findFirst().orElse(null);
         KeyPair keyPair = walletAccount == null ? null : walletAccount.getKey();
         //LINQ END
 
         WalletAccount account = Program.wallet.createAccount(multiSignContract, keyPair);
+        onAccountAdded(account);
         if (Program.wallet instanceof NEP6Wallet)
             ((NEP6Wallet) Program.wallet).save();
 
@@ -802,38 +892,34 @@ public class MainService extends ConsoleServiceBase {
     }
 
     private boolean onImportKeyCommand(String[] args) {
-        if (args.length > 3) {
-            ConsoleHelper.writeLine("error");
-            return true;
-        }
         byte[] prikey = null;
         try {
             prikey = Wallet.getPrivateKeyFromWIF(args[2]);
         } catch (FormatException e) {
         }
         if (prikey == null) {
-            String[] lines = new String[0];
+            // 流式导入：分块在线程池上处理，分批保存，中断后再次执行同一命令会从上次保存的行继续
+            KeyImporter importer = new KeyImporter(Program.wallet, Runtime.getRuntime()
+                    .availableProcessors(), 256, 10000, 500);
+            KeyImporter.Result result;
             try {
-                lines = Files.readAllLines(new File(args[2]).toPath()).toArray(new String[0]);
+                result = importer.run(new File(args[2]).toPath(), (lines, imported, duplicates,
+                                                                    failed) ->
+                        ConsoleHelper.write(String.format("\r[line %d] imported: %d  duplicates: %d  " +
+                                "failed: %d", lines, imported, duplicates, failed)));
             } catch (IOException e) {
                 TR.warn(e);
                 throw new RuntimeException(e);
             }
-            for (int i = 0; i < lines.length; i++) {
-                if (lines[i].length() == 64)
-                    prikey = BitConverter.hexToBytes(lines[i]);
-                else
-                    prikey = Wallet.getPrivateKeyFromWIF(lines[i]);
-                Program.wallet.createAccount(prikey);
-                Arrays.fill(prikey, 0, prikey.length, (byte) 0x00);
-                // TODO: 2019/4/17 控制台光标移动，暂时不需要
-                //Console.SetCursorPosition(0, Console.CursorTop);
-                ConsoleHelper.write(String.format("[{0}/{1}]", i + 1, lines.length));
-            }
             ConsoleHelper.writeLine();
+            onAccountsChanged();
+            if (result.resumedFrom > 0)
+                ConsoleHelper.writeLine(String.format("resumed after line %d", result.resumedFrom));
+            return true;
         } else {
             WalletAccount account = Program.wallet.createAccount(prikey);
             Arrays.fill(prikey, 0, prikey.length, (byte) 0x00);
+            onAccountAdded(account);
             ConsoleHelper.writeLine(String.format("address: {0}", account.getAddress()));
             ConsoleHelper.writeLine(String.format(" pubkey: {0}", BitConverter.toHexString(account.getKey()
                     .publicKey.getEncoded(true))));
@@ -843,23 +929,9 @@ public class MainService extends ConsoleServiceBase {
         return true;
     }
 
-    private boolean onListCommand(String[] args) {
-        switch (args[1].toLowerCase()) {
-            case "address":
-                return onListAddressCommand(args);
-            case "asset":
-                return onListAssetCommand(args);
-            case "key":
-                return onListKeyCommand(args);
-            default:
-                return super.onCommand(args);
-        }
-    }
-
     private boolean onClaimCommand(String[] args) {
-        if (args.length < 2 || args.length > 4 || !args[1].equalsIgnoreCase("gas"))
-            return super.onCommand(args);
-        if (noWallet()) return true;
+        if (args.length == 3 && args[2].equalsIgnoreCase("plan"))
+            return onClaimGasPlanCommand();
 
         boolean all = args.length > 2 && args[2].equalsIgnoreCase("all");
         boolean useChangeAddress = (all && args.length == 4) || (!all && args.length == 3);
@@ -868,54 +940,108 @@ public class MainService extends ConsoleServiceBase {
         if (useChangeAddress) {
             String password = readPassword("password");
             if (password.length() == 0) {
-                ConsoleHelper.writeLine("cancelled");
+                ConsoleHelper.writeError("cancelled");
                 return true;
             }
             if (!Program.wallet.verifyPassword(password)) {
-                ConsoleHelper.writeLine("Incorrect password");
+                ConsoleHelper.writeError("Incorrect password");
                 return true;
             }
         }
-        Coins coins = new Coins(Program.wallet, system);
+        Coins coins = new Coins(Program.wallet, submitter, getBonusTracker());
         ClaimTransaction[] txs = all
                 ? coins.claimAll(changeAddress)
                 : new ClaimTransaction[]{coins.claim(changeAddress)};
         if (txs == null) return true;
+        // claim all中失败的批次为null，原因已在回调线程上输出；单笔claim的失败已由signTransaction记录
+        if (all && Arrays.asList(txs).contains(null)) ConsoleHelper.setCommandFailed();
+        onWalletChanged();
         for (ClaimTransaction tx : txs)
             if (tx != null)
                 ConsoleHelper.writeLine(String.format("Transaction Succeeded: {0}", tx.hash()));
+        if (all) ConsoleHelper.writeLine(submitter.getMetrics());
         return true;
     }
 
-    private boolean onShowGasCommand(String[] args) {
-        if (noWallet()) return true;
+    private boolean onClaimGasPlanCommand() {
+        List<ClaimPacker.Batch> batches = new Coins(Program.wallet, submitter).planClaims();
+        Fixed8 total = Fixed8.ZERO;
+        int claims = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            ClaimPacker.Batch batch = batches.get(i);
+            ConsoleHelper.writeLine(String.format("batch %d: claims: %d  size: %d  gas: %s", i + 1,
+                    batch.claims.length, batch.size, batch.value));
+            total = Fixed8.add(total, batch.value);
+            claims += batch.claims.length;
+        }
+        ConsoleHelper.writeLine(String.format("total: %d transactions, %d claims, %s gas", batches
+                .size(), claims, total));
+        return true;
+    }
 
-        Coins coins = new Coins(Program.wallet, system);
-        ConsoleHelper.writeLine(String.format("unavailable: {0}", coins.unavailableBonus()
-                .toString()));
-        ConsoleHelper.writeLine(String.format("  available: {0}", coins.availableBonus()
-                .toString()));
+    private boolean onShowGasCommand(String[] args) {
+        BonusTracker tracker = getBonusTracker();
+        if (args.length >= 3 && args[2].equalsIgnoreCase("verify")) {
+            tracker.refreshNow();
+            Coins coins = new Coins(Program.wallet, submitter);
+            long start = System.nanoTime();
+            Fixed8 unavailable = coins.unavailableBonus(false);
+            long sequential = System.nanoTime() - start;
+            start = System.nanoTime();
+            Fixed8 parallel = coins.unavailableBonus(true);
+            long elapsed = System.nanoTime() - start;
+            Fixed8 available = coins.availableBonus();
+            ConsoleHelper.writeLine(String.format("unavailable: %s", unavailable));
+            ConsoleHelper.writeLine(String.format("  available: %s", available));
+            ConsoleHelper.writeLine(String.format("sequential: %d ms, parallel: %d ms%s",
+                    sequential / 1000000, elapsed / 1000000, parallel.equals(unavailable) ? "" :
+                            String.format(" (parallel result differs: %s)", parallel)));
+            String error = tracker.getError();
+            if (error != null) {
+                ConsoleHelper.writeLine(String.format("tracker: incomplete at height %s, %s", tracker.getHeight(),
+                        error));
+            } else if (tracker.verify(available, unavailable)) {
+                ConsoleHelper.writeLine(String.format("tracker: consistent at height %s", tracker
+                        .getHeight()));
+            } else {
+                ConsoleHelper.writeLine(String.format("tracker: mismatch at height %s, unavailable: " +
+                        "%s, available: %s", tracker.getHeight(), tracker.getUnavailable(), tracker
+                        .getAvailable()));
+            }
+            return true;
+        }
+        if (args.length >= 3) {
+            UInt160 scriptHash = Helper.toScriptHash(args[2]);
+            BonusTracker.AccountBonus bonus = tracker.getAccount(scriptHash);
+            String error = tracker.getError(scriptHash);
+            ConsoleHelper.writeLine(error != null ? String.format("unavailable: error (%s)", error) : String
+                    .format("unavailable: %s", bonus.unavailable));
+            ConsoleHelper.writeLine(String.format("  available: %s", bonus.available));
+            return true;
+        }
+        ConsoleHelper.writeLine(String.format("unavailable: %s", tracker.getUnavailable()));
+        ConsoleHelper.writeLine(String.format("  available: %s", tracker.getAvailable()));
+        String error = tracker.getError();
+        if (error != null) ConsoleHelper.writeLine(String.format("warning: %s", error));
         return true;
     }
 
     private boolean onListKeyCommand(String[] args) {
-        if (noWallet()) return true;
         //LINQ START
 /*        for (KeyPair key : Program.Wallet.GetAccounts().Where(p = > p.HasKey).
         Select(p = > p.getKey()))
         {
             ConsoleHelper.writeLine(key.PublicKey);
         }*/
-        for (KeyPair key : StreamSupport.stream(Program.wallet.getAccounts().spliterator(), false)
-                .filter(p -> p.hasKey()).map(p -> p.getKey()).collect(Collectors.toList())) {
-            ConsoleHelper.writeLine(key.publicKey.toString());
+        // 公钥取自账户的标准合约脚本，不需要逐个解密私钥
+        for (ECPoint publicKey : getAccountIndex().getPublicKeys()) {
+            ConsoleHelper.writeLine(publicKey.toString());
         }
         //LINQ END
         return true;
     }
 
     private boolean onListAddressCommand(String[] args) {
-        if (noWallet()) return true;
         //LINQ START
 /*        foreach (Contract contract in Program.Wallet.GetAccounts().Where(p => !p.WatchOnly).Select(p => p.Contract))
         {
@@ -932,7 +1058,6 @@ public class MainService extends ConsoleServiceBase {
     }
 
     private boolean onListAssetCommand(String[] args) {
-        if (noWallet()) return true;
         //LINQ START
 /*        for (var item : Program.wallet.getCoins().Where(p = > !p.State.HasFlag(CoinState.Spent))
         .GroupBy(p = > p.Output.AssetId, (k, g) =>
@@ -950,152 +1075,93 @@ public class MainService extends ConsoleServiceBase {
             Console.WriteLine();
         }*/
 
-        List<Map<String, Object>> temp = new ArrayList<>();
-        Map<UInt256, List<Coin>> tempMap = StreamSupport.stream(Program.wallet.getCoins()
-                .spliterator(), false).filter(p -> !p.state.hasFlag(CoinState.Spent))
-                .collect(Collectors.groupingBy(p -> p.output.assetId));
-        List<Map<String, Object>> itemlist = tempMap.entrySet().stream().map(p -> {
-            AssetState asset = Blockchain.singleton().getStore().getAssets().tryGet(p.getKey());
-            Fixed8 balance = p.getValue().stream().map(q -> q.output.value).reduce(Fixed8.ZERO, (x, y)
-                    -> Fixed8.add(x, y));
-            Fixed8 confirmed = p.getValue().stream().filter(k -> k.state.hasFlag(CoinState.Confirmed))
-                    .map(q -> q.output.value).reduce(Fixed8.ZERO, (x, y)
-                            -> Fixed8.add(x, y));
-
-            Map<String, Object> k = new HashMap<>();
-            k.put("asset", asset);
-            k.put("balance", balance);
-            k.put("confirmed", confirmed);
-            return k;
-        }).collect(Collectors.toList());
-
-        for (Map<String, Object> item : itemlist) {
-            ConsoleHelper.writeLine(String.format("       id:{0}", ((AssetState) item.get("asset"))
-                    .assetId));
-            ConsoleHelper.writeLine(String.format("     name:{0}", ((AssetState) item.get("asset"))
-                    .getName()));
-            ConsoleHelper.writeLine(String.format("  balance:{0}", ((Fixed8) item.get("balance")).toString()));
-            ConsoleHelper.writeLine(String.format("confirmed:{0}", ((Fixed8) item.get("confirmed"))
-                    .toString()));
+        // 余额按资产增量维护，这里只读取汇总值
+        for (AssetBalances.Balance item : getAssetBalances().list()) {
+            ConsoleHelper.writeLine(String.format("       id:%s", item.asset.assetId));
+            ConsoleHelper.writeLine(String.format("     name:%s", item.asset.getName()));
+            ConsoleHelper.writeLine(String.format("  balance:%s", item.balance));
+            ConsoleHelper.writeLine(String.format("confirmed:%s", item.confirmed));
             ConsoleHelper.writeLine();
         }
         //LINQ END
         return true;
     }
 
-    private boolean onOpenCommand(String[] args) {
-        switch (args[1].toLowerCase()) {
-            case "wallet":
-                return OnOpenWalletCommand(args);
-            default:
-                return super.onCommand(args);
-        }
-    }
-
     //TODO: 目前没有想到其它安全的方法来保存密码
     //所以只能暂时手动输入，但如此一来就不能以服务的方式启动了
     //未来再想想其它办法，比如采用智能卡之类的
     private boolean OnOpenWalletCommand(String[] args) {
-        if (args.length < 3) {
-            ConsoleHelper.writeLine("error");
-            return true;
-        }
         String path = args[2];
         if (!new File(path).exists()) {
-            ConsoleHelper.writeLine("File does not exist");
+            ConsoleHelper.writeError("File does not exist");
             return true;
         }
         String password = readPassword("password");
         if (password.length() == 0) {
-            ConsoleHelper.writeLine("cancelled");
+            ConsoleHelper.writeError("cancelled");
             return true;
         }
         try {
-            Program.wallet = openWallet(getIndexer(), path, password);
+            Wallet wallet = openWallet(getIndexer(), path, password);
+            stopSweepForWalletChange();
+            Program.wallet = wallet;
         } catch (Exception e) {
-            ConsoleHelper.writeLine(String.format("failed to open file \"{0}\"", path));
+            ConsoleHelper.writeError(String.format("failed to open file \"{0}\"", path));
         }
         if (system.rpcServer != null)
             system.rpcServer.wallet = Program.wallet;
         return true;
     }
 
-    private boolean OnRebuildCommand(String[] args) {
-        switch (args[1].toLowerCase()) {
-            case "index":
-                return onRebuildIndexCommand(args);
-            default:
-                return super.onCommand(args);
-        }
-    }
-
     private boolean onRebuildIndexCommand(String[] args) {
         getIndexer().rebuildIndex();
+        if (utxoIndex != null) utxoIndex.invalidate();
+        if (assetBalances != null) assetBalances.invalidate();
         return true;
     }
 
     private boolean onSendCommand(String[] args) {
-        if (args.length < 4 || args.length > 5) {
-            ConsoleHelper.writeLine("error");
-            return true;
-        }
-        if (noWallet()) return true;
         String password = readPassword("password");
         if (password.length() == 0) {
-            ConsoleHelper.writeLine("cancelled");
+            ConsoleHelper.writeError("cancelled");
             return true;
         }
         if (!Program.wallet.verifyPassword(password)) {
-            ConsoleHelper.writeLine("Incorrect password");
+            ConsoleHelper.writeError("Incorrect password");
             return true;
         }
-        UIntBase assetId;
-        switch (args[1].toLowerCase()) {
-            case "neo":
-            case "ans":
-                assetId = Blockchain.GoverningToken.hash();
-                break;
-            case "gas":
-            case "anc":
-                assetId = Blockchain.UtilityToken.hash();
-                break;
-            default:
-                assetId = UIntBase.parse(args[1]);
-                break;
-        }
+        UIntBase assetId = Coins.parseAssetId(args[1]);
         UInt160 scriptHash = Helper.toScriptHash(args[2]);
         boolean isSendAll = args[3].equalsIgnoreCase("all");
         Transaction tx;
         if (isSendAll) {
-            //LINQ START
-/*            Coin[] coins = Program.wallet.findUnspentCoins().Where(p = > p.Output.AssetId.Equals
-                    (assetId)).ToArray();
-            tx = new ContractTransaction();
-            {
-                Attributes = new TransactionAttribute[0],
-                        Inputs = coins.Select(p = > p.Reference).ToArray(),
-                    Outputs = new[]
-                {
-                    new TransactionOutput
-                    {
-                        AssetId = (UInt256) assetId,
-                                Value = coins.Sum(p = > p.Output.Value),
-                        ScriptHash = scriptHash
-                    }
-                }
-            } ;*/
-            Coin[] coins = StreamSupport.stream(Program.wallet.findUnspentCoins().spliterator(),
-                    false).filter(p -> p.output.assetId.equals(assetId)).toArray(Coin[]::new);
-            tx = new ContractTransaction();
-            tx.attributes = new TransactionAttribute[0];
-            tx.inputs = Arrays.asList(coins).stream().map(p -> p.reference).toArray(CoinReference[]::new);
-            TransactionOutput transactionOutput = new TransactionOutput();
-            transactionOutput.assetId = (UInt256) assetId;
-            transactionOutput.value = Arrays.asList(coins).stream().map(p -> p.output.value).reduce
-                    (Fixed8.ZERO, (x, y) -> Fixed8.add(x, y));
-            transactionOutput.scriptHash = scriptHash;
-            tx.outputs = new TransactionOutput[]{transactionOutput};
-            //LINQ END
+            if (!(assetId instanceof UInt256)) {
+                ConsoleHelper.writeError("Sending all is only supported for global assets");
+                return true;
+            }
+            // UTXO较多时一笔交易会超过大小上限，按大小拆分成多笔交易并行签名后relay
+            SweepEngine engine = newSweepEngine();
+            List<ContractTransaction> txs = engine.plan((UInt256) assetId, scriptHash, null);
+            if (txs.isEmpty()) {
+                ConsoleHelper.writeError("Insufficient funds");
+                return true;
+            }
+            if (txs.size() > 1)
+                ConsoleHelper.writeLine(String.format("%d UTXOs are split into %d transactions", txs
+                        .stream().mapToInt(p -> p.inputs.length).sum(), txs.size()));
+            // 回调在签名和relay线程上执行，输出仍需回到调用命令的控制台或控制连接
+            Consumer<String> out = ConsoleHelper.lineWriter();
+            int relayed = engine.submit(txs, (t, reason) -> {
+                if (reason == RelayResultReason.Succeed)
+                    out.accept(String.format("TXID: %s", t.hash()));
+                else
+                    out.accept(String.format("Failed: %s (%s)", t.hash(), reason == null
+                            ? "Incomplete Signature" : reason));
+            }).join();
+            // 失败的交易已在回调线程上输出，这里只记录命令失败
+            if (relayed < txs.size()) ConsoleHelper.setCommandFailed();
+            onWalletChanged();
+            return true;
         } else {
             AssetDescriptor descriptor = new AssetDescriptor(assetId);
 
@@ -1107,7 +1173,7 @@ public class MainService extends ConsoleServiceBase {
                     throw new Exception();
                 }
             } catch (Exception e) {
-                ConsoleHelper.writeLine("Incorrect Amount Format");
+                ConsoleHelper.writeError("Incorrect Amount Format");
                 return true;
             }
             Fixed8 fee = Fixed8.ZERO;
@@ -1115,28 +1181,39 @@ public class MainService extends ConsoleServiceBase {
             if (args.length >= 5) {
                 Fixed8 fee1 = new Fixed8();
                 if (!Fixed8.tryParse(args[4], fee1) || fee1.compareTo(Fixed8.ZERO) < 0) {
-                    ConsoleHelper.writeLine("Incorrect Fee Format");
+                    ConsoleHelper.writeError("Incorrect Fee Format");
                     return true;
                 }
+                fee = fee1;
             }
 
-            TransferOutput transferOutput = new TransferOutput(assetId, amount, scriptHash);
-            tx = Program.wallet.makeTransaction(null, Arrays.asList(new
-                    TransferOutput[]{transferOutput}), null, null, fee);
+            if (assetId instanceof UInt256) {
+                // 全局资产用UTXO索引选币，不再每次线性扫描钱包中的全部币
+                TransactionOutput output = new TransactionOutput();
+                output.assetId = (UInt256) assetId;
+                output.value = Fixed8.fromDecimal(amount);
+                output.scriptHash = scriptHash;
+                tx = getUtxoIndex().makeTransaction(Collections.singletonList(output), Program.wallet
+                        .getChangeAddress(), fee);
+            } else {
+                TransferOutput transferOutput = new TransferOutput(assetId, amount, scriptHash);
+                tx = Program.wallet.makeTransaction(null, Arrays.asList(new
+                        TransferOutput[]{transferOutput}), null, null, fee);
+            }
             if (tx == null) {
-                ConsoleHelper.writeLine("Insufficient funds");
+                ConsoleHelper.writeError("Insufficient funds");
                 return true;
             }
         }
-        ContractParametersContext context = new ContractParametersContext(tx);
-        Program.wallet.sign(context);
+        ContractParametersContext context = submitter.sign(Program.wallet, tx);
         if (context.completed()) {
-            tx.witnesses = context.getWitnesses();
-            Program.wallet.applyTransaction(tx);
-            LocalNode.Relay relay = new LocalNode.Relay();
-            relay.inventory = tx;
-            system.localNode.tell(relay, ActorRef.noSender());
-            ConsoleHelper.writeLine(String.format("TXID: {0}", tx.hash()));
+            onWalletChanged();
+            RelayResultReason reason = awaitRelay(tx);
+            if (reason == RelayResultReason.Succeed)
+                ConsoleHelper.writeLine(String.format("TXID: %s", tx.hash()));
+            else if (reason != null)
+                ConsoleHelper.writeError(String.format("Local Node could not relay transaction: %s (%s)",
+                        tx.hash(), reason));
         } else {
             ConsoleHelper.writeLine("SignatureContext:");
             ConsoleHelper.writeLine(context.toString());
@@ -1144,153 +1221,292 @@ public class MainService extends ConsoleServiceBase {
         return true;
     }
 
-    private boolean onShowCommand(String[] args) {
-        switch (args[1].toLowerCase()) {
-            case "gas":
-                return onShowGasCommand(args);
-            case "pool":
-                return onShowPoolCommand(args);
-            case "state":
-                return onShowStateCommand(args);
-            case "utxo":
-                return onShowUtxoCommand(args);
-            default:
-                return super.onCommand(args);
+    /**
+     * 按CSV文件批量转账，每行address,asset,amount，结果写入同目录的<file>.result.csv
+     */
+    private boolean onSendBatchCommand(String[] args) {
+        File file = new File(args[2]);
+        if (!file.exists()) {
+            ConsoleHelper.writeError("File does not exist");
+            return true;
         }
+        Fixed8 fee = Fixed8.ZERO;
+        if (args.length == 4) {
+            try {
+                fee = Fixed8.fromDecimal(new BigDecimal(args[3]));
+            } catch (NumberFormatException e) {
+                fee = null;
+            }
+            if (fee == null || fee.compareTo(Fixed8.ZERO) < 0) {
+                ConsoleHelper.writeError("Incorrect Fee Format");
+                return true;
+            }
+        }
+        String password = readPassword("password");
+        if (password.length() == 0) {
+            ConsoleHelper.writeError("cancelled");
+            return true;
+        }
+        if (!Program.wallet.verifyPassword(password)) {
+            ConsoleHelper.writeError("Incorrect password");
+            return true;
+        }
+        File resultFile = new File(file.getPath() + ".result.csv");
+        Settings.PayoutSettings settings = Settings.getDefaultInstance().getPayout();
+        BatchPayout payout = new BatchPayout(Program.wallet, submitter, settings.getMaxOutputs(),
+                settings.getMaxTransactionSize(), Runtime.getRuntime().availableProcessors());
+        long start = System.currentTimeMillis();
+        BatchPayout.Summary summary;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath());
+             BufferedWriter writer = Files.newBufferedWriter(resultFile.toPath())) {
+            // 回调在签名和relay线程上执行，输出仍需回到调用命令的控制台或控制连接
+            Consumer<String> out = ConsoleHelper.lineWriter();
+            summary = payout.run(reader, writer, fee, (tx, rows, succeeded, result) -> {
+                if (succeeded)
+                    out.accept(String.format("TXID: %s (%d rows)", tx.hash(), rows));
+                else
+                    out.accept(String.format("Failed: %s (%d rows, %s)", tx.hash(), rows, result));
+            });
+        } catch (IOException e) {
+            TR.warn(e);
+            ConsoleHelper.writeError(String.format("error: %s", e.getMessage()));
+            return true;
+        } finally {
+            onWalletChanged();
+        }
+        ConsoleHelper.writeLine(String.format("rows: %d  failed: %d  transactions: %d/%d  elapsed: %d ms",
+                summary.rows, summary.failedRows, summary.succeededTransactions, summary
+                        .transactions, System.currentTimeMillis() - start));
+        ConsoleHelper.writeLine(String.format("results: %s", resultFile.getPath()));
+        if (summary.failedRows > 0) ConsoleHelper.setCommandFailed();
+        return true;
     }
 
+    /**
+     * @Author:doubi.liu
+     * @description:show pool [verbose] [--type X] [--limit N] [--sort fee|size|tracked]列出内存池中的交易，
+     * show pool stats输出手续费、大小、类型和已跟踪时长的分布
+     * @date:2026/10/18
+     */
     private boolean onShowPoolCommand(String[] args) {
-        boolean verbose = args.length >= 3 && args[2] == "verbose";
-        if (verbose) {
-            Out<Collection<Transaction>> verifiedTransactions = new Out();
-            verifiedTransactions.set(new ArrayList<>());
-            Out<Collection<Transaction>> unverifiedTransactions = new Out();
-            unverifiedTransactions.set(new ArrayList<>());
-            Blockchain.singleton().getMemPool().getVerifiedAndUnverifiedTransactions(
-                    verifiedTransactions, unverifiedTransactions);
-            ConsoleHelper.writeLine("Verified Transactions:");
-            for (Transaction tx : verifiedTransactions.get())
-                ConsoleHelper.writeLine(String.format(" {0} {1}", tx.hash(), tx.getClass().getName()));
-            ConsoleHelper.writeLine("Unverified Transactions:");
-            for (Transaction tx : unverifiedTransactions.get())
-                ConsoleHelper.writeLine(String.format(" {0} {1}", tx.hash(), tx.getClass().getName()));
-        }
-        ConsoleHelper.writeLine(String.format("total: {0}, verified: " +
-                        "{1}, unverified: {2}", Blockchain.singleton().getMemPool().count(),
-                Blockchain.singleton().getMemPool().verifiedCount(),
-                Blockchain.singleton().getMemPool().unVerifiedCount()));
+        if (args.length == 3 && args[2].equalsIgnoreCase("stats")) {
+            printPoolStats();
+            return true;
+        }
+        boolean list = false;
+        String type = null;
+        MemPoolTracker.Sort sort = MemPoolTracker.Sort.FEE;
+        int limit = POOL_DEFAULT_LIMIT;
+        for (int i = 2; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equalsIgnoreCase("verbose")) {
+                list = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                ConsoleHelper.writeError(String.format("missing value for %s", arg));
+                return true;
+            }
+            String value = args[++i];
+            list = true;
+            if (arg.equalsIgnoreCase("--type")) {
+                type = value;
+            } else if (arg.equalsIgnoreCase("--limit")) {
+                try {
+                    limit = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    limit = -1;
+                }
+                if (limit < 0) {
+                    ConsoleHelper.writeError(String.format("invalid limit: %s", value));
+                    return true;
+                }
+            } else if (arg.equalsIgnoreCase("--sort")) {
+                try {
+                    sort = MemPoolTracker.Sort.valueOf(value.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    ConsoleHelper.writeError(String.format("invalid sort: %s (fee|size|tracked)", value));
+                    return true;
+                }
+            } else {
+                ConsoleHelper.writeError(String.format("unknown option: %s", arg));
+                return true;
+            }
+        }
+        if (list) {
+            long now = System.currentTimeMillis();
+            List<MemPoolTracker.Entry> entries = memPoolTracker.select(type, sort, limit);
+            ConsoleHelper.writeLine(String.format("%-66s %-24s %7s %10s %8s", "hash", "type", "size", "fee/byte",
+                    "tracked"));
+            for (MemPoolTracker.Entry entry : entries)
+                ConsoleHelper.writeLine(String.format("%-66s %-24s %7d %10d %8s", entry.hash, entry.type, entry
+                        .size, entry.feePerByte, SyncMonitor.formatDuration((now - entry.trackedSinceMillis) /
+                        1000)));
+        }
+        ConsoleHelper.writeLine(String.format("total: %d, verified: %d, unverified: %d", Blockchain.singleton()
+                .getMemPool().count(), Blockchain.singleton().getMemPool().verifiedCount(), Blockchain.singleton()
+                .getMemPool().unVerifiedCount()));
         return true;
     }
 
-    private boolean onShowStateCommand(String[] args) {
-        final boolean[] stop = {false};
-        //Console.CursorVisible = false;
-        ConsoleHelper.clear();
-        //Object lock=new Object();
-        Thread thread=new Thread(new Runnable() {
-            @Override
-            public void run() {
-                while (!stop[0]) {
-                    // TODO: 2019/4/17 控制台光标移动，暂时不需要
-                    //Console.SetCursorPosition(0, 0);
-                    Uint wh = Uint.ZERO;
-                    if (Program.wallet != null)
-                        wh = (Program.wallet.getWalletHeight().compareTo(Uint.ZERO) > 0) ? Program.wallet
-                                .getWalletHeight().subtract(Uint.ONE) : Uint.ZERO;
-
-                    writeLineWithoutFlicker(String.format("block: {0}/{1}/{2}  connected: {3}  " +
-                            "unconnected: {4}", wh, Blockchain.singleton
-                            ().height(), Blockchain.singleton().headerHeight(), LocalNode.singleton()
-                            .getConnectedCount(), LocalNode.singleton().getUnconnectedCount()), 80);
-                    int linesWritten = 1;
-                    for (RemoteNode node : LocalNode.singleton().getRemoteNodes().toArray
-                            (new RemoteNode[0])) {
-                        writeLineWithoutFlicker(String.format("  ip: {0}\tport: {1}\tlisten: {2}\theight:" +
-                                " {3}", node.remote.getAddress(), node.remote.getPort(), node
-                                .getListenerPort(), node.version == null ? null : node.version.startHeight), 80);
-                        linesWritten++;
-                    }
-
-                    //while (++linesWritten < ConsoleHelper.getConsole().WindowHeight)
-                        writeLineWithoutFlicker();
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        });
-        thread.start();
-/*        Task task = Task.Run(async() = >
-                {
-        while (!stop) {
-            // TODO: 2019/4/17 控制台光标移动，暂时不需要
-            //Console.SetCursorPosition(0, 0);
-            Uint wh = Uint.ZERO;
-            if (Program.wallet != null)
-                wh = (Program.wallet.getWalletHeight().compareTo(Uint.ZERO) > 0) ? Program.wallet
-                        .getWalletHeight().subtract(Uint.ONE) : Uint.ZERO;
-
-            writeLineWithoutFlicker(String.format("block: {0}/{1}/{2}  connected: {3}  " +
-                    "unconnected: {4}", wh, Blockchain.singleton
-                    ().height(), Blockchain.singleton().headerHeight(), LocalNode.singleton()
-                    .getConnectedCount(), LocalNode.singleton().getUnconnectedCount()), 80);
-            int linesWritten = 1;
-            for (RemoteNode node : LocalNode.singleton().getRemoteNodes().Take(Console.WindowHeight -
-                    2).ToArray()) {
-                writeLineWithoutFlicker(String.format("  ip: {0}\tport: {1}\tlisten: {2}\theight:" +
-                        " {3}", node.remote.getAddress(), node.remote.getPort(), node
-                        .getListenerPort(), node.version == null ? null : node.version.startHeight), 80);
-                linesWritten++;
-            }
+    private void printPoolStats() {
+        MemPoolTracker.Stats stats = memPoolTracker.getStats();
+        ConsoleHelper.writeLine(String.format("tracked: %d  bytes: %d", stats.count, stats.totalBytes));
+        ConsoleHelper.writeLine("fee per byte (datoshi):");
+        int lastFee = stats.feeBuckets.length - 1;
+        while (lastFee > 0 && stats.feeBuckets[lastFee] == 0) lastFee--;
+        for (int i = 0; i <= lastFee; i++) {
+            String range = i == 0 ? "0" : i == MemPoolTracker.FEE_BUCKETS - 1 ? String.format(">=%d", 1L <<
+                    (i - 1)) : String.format("%d-%d", 1L << (i - 1), (1L << i) - 1);
+            ConsoleHelper.writeLine(String.format("  %-24s %d", range, stats.feeBuckets[i]));
+        }
+        ConsoleHelper.writeLine("size (bytes):");
+        for (int i = 0; i < stats.sizeBuckets.length; i++) {
+            String range = i == 0 ? "<256" : i == MemPoolTracker.SIZE_BUCKETS - 1 ? String.format(">=%d", 1 <<
+                    (i + 7)) : String.format("%d-%d", 1 << (i + 7), (1 << (i + 8)) - 1);
+            ConsoleHelper.writeLine(String.format("  %-24s %d", range, stats.sizeBuckets[i]));
+        }
+        ConsoleHelper.writeLine("type:");
+        for (Map.Entry<String, Long> entry : stats.types.entrySet())
+            ConsoleHelper.writeLine(String.format("  %-24s %d", entry.getKey(), entry.getValue()));
+        ConsoleHelper.writeLine("tracked for:");
+        for (int i = 0; i < stats.trackedBuckets.length; i++) {
+            long[] bounds = MemPoolTracker.TRACKED_BOUNDS;
+            String range = i < bounds.length ? "<" + SyncMonitor.formatDuration(bounds[i]) : ">=" + SyncMonitor
+                    .formatDuration(bounds[i - 1]);
+            ConsoleHelper.writeLine(String.format("  %-24s %d", range, stats.trackedBuckets[i]));
+        }
+    }
 
-            while (++linesWritten < ConsoleHelper.getConsole().WindowHeight)
-                writeLineWithoutFlicker();
-            await Task.Delay(500);
+    private boolean onShowStateCommand(String[] args) {
+        StateDashboard dashboard = new StateDashboard(persistObserver, this::renderState, 250, 1000);
+        if (ConsoleHelper.isCaptured()) {
+            // 脚本和控制端口中只输出一次
+            dashboard.printOnce();
+            return true;
+        }
+        dashboard.start();
+        try {
+            ConsoleHelper.readLine();
+        } finally {
+            dashboard.close();
         }
-            });*/
-        ConsoleHelper.readLine();
-        stop[0] = true;
-        //lock.Wait();
         ConsoleHelper.writeLine();
-        // TODO: 2019/4/17 控制台光标移动，暂时不需要
-        //Console.CursorVisible = true;
+        return true;
+    }
+
+    /**
+     * 面板内容：区块高度和连接数，之后每个连接一行，最多列出STATE_MAX_PEERS个
+     */
+    private void renderState(StateDashboard.Lines lines) {
+        Uint wh = Uint.ZERO;
+        Wallet wallet = Program.wallet;
+        if (wallet != null)
+            wh = (wallet.getWalletHeight().compareTo(Uint.ZERO) > 0) ? wallet.getWalletHeight().subtract(Uint
+                    .ONE) : Uint.ZERO;
+        lines.next().append("block: ").append(wh).append('/').append(Blockchain.singleton().height())
+                .append('/').append(Blockchain.singleton().headerHeight()).append("  connected: ")
+                .append(LocalNode.singleton().getConnectedCount()).append("  unconnected: ")
+                .append(LocalNode.singleton().getUnconnectedCount());
+        SyncMonitor.Rate rate = syncMonitor.getRate(60);
+        lines.next().append("sync: ").append(String.format("%.1f blocks/s  %.1f tx/s  %.1f KB/s  eta: %s",
+                rate.blocksPerSecond, rate.transactionsPerSecond, rate.bytesPerSecond / 1024,
+                SyncMonitor.formatDuration(syncMonitor.getSecondsToTip())));
+        int total = 0;
+        for (RemoteNode node : LocalNode.singleton().getRemoteNodes()) {
+            if (total++ >= STATE_MAX_PEERS) continue;
+            lines.next().append("  ip: ").append(node.remote.getAddress().getHostAddress()).append("\tport: ")
+                    .append(node.remote.getPort()).append("\tlisten: ").append(node.getListenerPort())
+                    .append("\theight: ").append(node.version == null ? null : node.version.startHeight);
+        }
+        if (total > STATE_MAX_PEERS)
+            lines.next().append("  ... ").append(total - STATE_MAX_PEERS).append(" more");
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:同步速度：10秒、60秒和5分钟窗口的区块、交易和字节速率，持久化间隔分位数，以及追上区块头的预计时间
+     * @date:2026/10/18
+     */
+    private boolean onShowSyncCommand(String[] args) {
+        ConsoleHelper.writeLine(String.format("height: %s/%s  remaining: %d", Blockchain.singleton().height(),
+                Blockchain.singleton().headerHeight(), syncMonitor.getRemainingBlocks()));
+        ConsoleHelper.writeLine(String.format("%-8s%12s%12s%12s", "window", "blocks/s", "tx/s", "KB/s"));
+        for (int window : new int[]{10, 60, 300}) {
+            SyncMonitor.Rate rate = syncMonitor.getRate(window);
+            ConsoleHelper.writeLine(String.format("%-8s%12.2f%12.2f%12.2f", rate.windowSeconds + "s", rate
+                    .blocksPerSecond, rate.transactionsPerSecond, rate.bytesPerSecond / 1024));
+        }
+        int count = syncMonitor.getPersistIntervalCount();
+        if (count > 0) {
+            StringBuilder sb = new StringBuilder(String.format("persist interval (last %d blocks):", count));
+            double[] quantiles = {0.5, 0.9, 0.99, 1};
+            String[] names = {"p50", "p90", "p99", "max"};
+            for (int i = 0; i < quantiles.length; i++)
+                sb.append(String.format("  %s %.1f ms", names[i], syncMonitor.getPersistIntervalPercentile
+                        (quantiles[i]) / 1e6));
+            ConsoleHelper.writeLine(sb.toString());
+        }
+        ConsoleHelper.writeLine(String.format("eta: %s", SyncMonitor.formatDuration(syncMonitor
+                .getSecondsToTip())));
         return true;
     }
 
     private boolean onShowUtxoCommand(String[] args) {
-        if (noWallet()) return true;
-        Iterable<Coin> coins = Program.wallet.findUnspentCoins();
-        if (args.length >= 3) {
-            UInt256 assetId;
-            switch (args[2].toLowerCase()) {
-                case "neo":
-                case "ans":
-                    assetId = Blockchain.GoverningToken.hash();
-                    break;
-                case "gas":
-                case "anc":
-                    assetId = Blockchain.UtilityToken.hash();
-                    break;
-                default:
-                    assetId = UInt256.parse(args[2]);
-                    break;
+        UInt256 assetId = null;
+        Fixed8 min = null;
+        UtxoView.Sort sort = UtxoView.Sort.NONE;
+        int offset = 0;
+        int limit = 100;
+        try {
+            for (int i = 2; i < args.length; i++) {
+                switch (args[i].toLowerCase()) {
+                    case "--offset":
+                        offset = Integer.parseInt(args[++i]);
+                        break;
+                    case "--limit":
+                        limit = Integer.parseInt(args[++i]);
+                        break;
+                    case "--min":
+                        min = Fixed8.fromDecimal(new BigDecimal(args[++i]));
+                        break;
+                    case "--sort":
+                        sort = UtxoView.Sort.valueOf(args[++i].toUpperCase());
+                        break;
+                    default:
+                        assetId = (UInt256) Coins.parseAssetId(args[i]);
+                        break;
+                }
+            }
+        } catch (RuntimeException e) {
+            ConsoleHelper.writeError("error");
+            return true;
+        }
+        if (offset < 0 || limit < 0) {
+            ConsoleHelper.writeError("error");
+            return true;
+        }
+        // 逐个输出，不把钱包中的币全部读入内存；个数由UTXO索引计算
+        UtxoIndex index = getUtxoIndex();
+        UtxoView view = new UtxoView(Program.wallet, index);
+        boolean showAsset = assetId == null;
+        view.page(assetId, min, sort, offset, limit, p -> {
+            StringBuilder line = new StringBuilder().append(p.coin.reference.prevHash).append(':')
+                    .append(p.coin.reference.prevIndex).append("  ").append(p.coin.output.value);
+            if (showAsset) {
+                AssetState asset = AssetBalances.getAsset(p.coin.output.assetId);
+                line.append("  ").append(asset == null ? p.coin.output.assetId : asset.getName());
             }
-            //LINQ START
-            //coins = coins.Where(p = > p.Output.AssetId.Equals(assetId));
-            coins = StreamSupport.stream(coins.spliterator(), false).filter(p -> p.output.assetId
-                    .equals(assetId)).collect(Collectors.toList());
-            //LINQ END
-        }
-        Coin[] coins_array = StreamSupport.stream(coins.spliterator(), false).toArray(Coin[]::new);
-        final int MAX_SHOW = 100;
-        for (int i = 0; i < coins_array.length && i < MAX_SHOW; i++)
-            ConsoleHelper.writeLine(String.format("{0}:{1}", coins_array[i].reference.prevHash,
-                    coins_array[i].reference.prevIndex));
-        if (coins_array.length > MAX_SHOW)
-            ConsoleHelper.writeLine(String.format("({0} more)", coins_array.length - MAX_SHOW));
-        ConsoleHelper.writeLine(String.format("total: {0} UTXOs", coins_array.length));
+            if (p.height >= 0) line.append("  height: ").append(p.height);
+            ConsoleHelper.writeLine(line.toString());
+        });
+        int count = view.count(assetId, min);
+        if (count > (long) offset + limit)
+            ConsoleHelper.writeLine(String.format("(%d more)", count - ((long) offset + limit)));
+        if (assetId == null || min != null)
+            ConsoleHelper.writeLine(String.format("total: %d UTXOs", count));
+        else
+            ConsoleHelper.writeLine(String.format("total: %d UTXOs, %s", count, index.total(assetId)));
         return true;
     }
 
@@ -1313,6 +1529,15 @@ public class MainService extends ConsoleServiceBase {
             throw new RuntimeException(e);
         }
         system = new NeoSystem(store);
+        persistObserver = new PersistObserver(system);
+        syncMonitor = new SyncMonitor(persistObserver);
+        memPoolTracker = new MemPoolTracker(persistObserver, POOL_REFRESH_SECONDS, POOL_IDLE_SECONDS,
+                POOL_FULL_REFRESH_SECONDS);
+        submitter = new TransactionSubmitter(system, Duration.ofSeconds(Settings.getDefaultInstance()
+                .getSubmit().getTimeoutSeconds()), Settings.getDefaultInstance().getSubmit().getMaxInFlight());
+        Coins.PARALLEL_BONUS = Settings.getDefaultInstance().getBonus().isParallel();
+        Coins.PARALLEL_BONUS_THRESHOLD = Settings.getDefaultInstance().getBonus().getParallelThreshold();
+        Coins.MAX_CLAIM_TRANSACTION_SIZE = Settings.getDefaultInstance().getClaim().getMaxTransactionSize();
         system.startNode(Settings.getDefaultInstance().getP2p().getPort().intValue(),
                 Settings.getDefaultInstance().getP2p().getMinDesiredConnections(),
                 Settings.getDefaultInstance().getP2p().getMaxConnections());
@@ -1330,6 +1555,18 @@ public class MainService extends ConsoleServiceBase {
                 onStartConsensusCommand(null);
             }
         }
+        Settings.MetricsSettings metrics = Settings.getDefaultInstance().getMetrics();
+        if (metrics.isEnabled()) {
+            nodeMetrics = new NodeMetrics(persistObserver, () -> Program.wallet);
+            try {
+                nodeMetrics.start(metrics.getBindAddress(), metrics.getPort(), metrics.getSampleIntervalSeconds());
+            } catch (IOException e) {
+                TR.warn(e);
+                nodeMetrics = null;
+                ConsoleHelper.writeLine(String.format("failed to start metrics endpoint on %s:%d: %s", metrics
+                        .getBindAddress(), metrics.getPort(), e.getMessage()));
+            }
+        }
         if (useRPC) {
             system.startRpc(Settings.getDefaultInstance().getRpc().bindAddress,
                     Settings.getDefaultInstance().getRpc().port.intValue(),
@@ -1339,17 +1576,61 @@ public class MainService extends ConsoleServiceBase {
         }
     }
 
-    private boolean onStartCommand(String[] args) {
-        switch (args[1].toLowerCase()) {
-            case "consensus":
-                return onStartConsensusCommand(args);
-            default:
-                return super.onCommand(args);
+    /**
+     * 后台定时把不超过maxValue的零碎UTXO合并到找零地址
+     */
+    private boolean onStartSweepCommand(String[] args) {
+        if (sweepJob != null) {
+            ConsoleHelper.writeError("Sweep is already running, use 'stop sweep' first.");
+            return true;
         }
+        UIntBase id = Coins.parseAssetId(args[2]);
+        if (!(id instanceof UInt256)) {
+            ConsoleHelper.writeError("Sweep is only supported for global assets");
+            return true;
+        }
+        UInt256 assetId = (UInt256) id;
+        Fixed8 maxValue;
+        try {
+            maxValue = Fixed8.fromDecimal(new BigDecimal(args[3]));
+        } catch (NumberFormatException e) {
+            ConsoleHelper.writeError("Incorrect Amount Format");
+            return true;
+        }
+        Settings.SweepSettings settings = Settings.getDefaultInstance().getSweep();
+        sweepJob = new SweepJob(Program.wallet, newSweepEngine(), assetId, maxValue, Program.wallet
+                .getChangeAddress(), settings.getQuietPoolSize(), this::onWalletChanged);
+        sweepJob.start(settings.getIntervalSeconds());
+        ConsoleHelper.writeLine(String.format("Sweep started, every %d seconds", settings
+                .getIntervalSeconds()));
+        return true;
+    }
+
+    private boolean onStopSweepCommand(String[] args) {
+        if (sweepJob != null) {
+            sweepJob.stop();
+            sweepJob = null;
+        }
+        ConsoleHelper.writeLine("Sweep stopped");
+        return true;
+    }
+
+    /**
+     * 合并任务绑定启动时的钱包，替换Program.wallet之前必须停止，否则会继续用旧钱包签名和发送
+     */
+    private void stopSweepForWalletChange() {
+        if (sweepJob == null) return;
+        sweepJob.stop();
+        sweepJob = null;
+        ConsoleHelper.writeLine("Sweep stopped because the wallet changed");
+    }
+
+    private boolean onShowSweepCommand(String[] args) {
+        ConsoleHelper.writeLine(sweepJob == null ? "Sweep is not running" : sweepJob.getStatus());
+        return true;
     }
 
     private boolean onStartConsensusCommand(String[] args) {
-        if (noWallet()) return true;
         showPrompt = false;
         system.startConsensus(Program.wallet);
         return true;
@@ -1357,6 +1638,15 @@ public class MainService extends ConsoleServiceBase {
 
     @Override
     protected void onStop() {
+        if (sweepJob != null) sweepJob.stop();
+        if (utxoIndex != null) utxoIndex.dispose();
+        if (assetBalances != null) assetBalances.dispose();
+        if (bonusTracker != null) bonusTracker.dispose();
+        if (walletObserver != null) walletObserver.dispose();
+        if (nodeMetrics != null) nodeMetrics.stop();
+        syncMonitor.dispose();
+        memPoolTracker.stop();
+        persistObserver.dispose();
         system.dispose();
         try {
             store.close();
@@ -1366,15 +1656,6 @@ public class MainService extends ConsoleServiceBase {
         }
     }
 
-    private boolean onUpgradeCommand(String[] args) {
-        switch (args[1].toLowerCase()) {
-            case "wallet":
-                return onUpgradeWalletCommand(args);
-            default:
-                return super.onCommand(args);
-        }
-    }
-
     private boolean onInstallCommand(String[] args) {
 /*        if (args.length < 2) {
             ConsoleHelper.writeLine("error");
@@ -1414,23 +1695,19 @@ public class MainService extends ConsoleServiceBase {
     }
 
     private boolean onUpgradeWalletCommand(String[] args) {
-        if (args.length < 3) {
-            ConsoleHelper.writeLine("error");
-            return true;
-        }
         String path = args[2];
         String fileName = new File(path).getName();
         if (fileName.substring(fileName.lastIndexOf("."), fileName.length()).equals(".db3")) {
-            ConsoleHelper.writeLine("Can't upgrade the wallet file.");
+            ConsoleHelper.writeError("Can't upgrade the wallet file.");
             return true;
         }
         if (!new File(path).exists()) {
-            ConsoleHelper.writeLine("File does not exist.");
+            ConsoleHelper.writeError("File does not exist.");
             return true;
         }
         String password = readPassword("password");
         if (password.length() == 0) {
-            ConsoleHelper.writeLine("cancelled");
+            ConsoleHelper.writeError("cancelled");
             return true;
         }
         String path_new = path.substring(0, path.lastIndexOf(".")) + ".json";
@@ -1450,19 +1727,4 @@ public class MainService extends ConsoleServiceBase {
             return nep6wallet;
         }
     }
-
-    private static void writeLineWithoutFlicker(String message, int maxWidth) {
-        if (message.length() > 0) ConsoleHelper.write(message);
-        int spacesToErase = maxWidth - message.length();
-        if (spacesToErase < 0) spacesToErase = 0;
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < spacesToErase; i++) {
-            builder.append(" ");
-        }
-        ConsoleHelper.writeLine(builder.toString());
-    }
-
-    private static void writeLineWithoutFlicker() {
-        writeLineWithoutFlicker("", 80);
-    }
 }
\ No newline at end of file
@@ -31,6 +31,13 @@ public class Settings {
     private P2PSettings p2p;
     private RPCSettings rpc;
     private UnlockWalletSettings unlockWallet;
+    private BonusSettings bonus;
+    private ClaimSettings claim;
+    private SubmitSettings submit;
+    private SweepSettings sweep;
+    private PayoutSettings payout;
+    private DaemonSettings daemon;
+    private MetricsSettings metrics;
     private String pluginURL;
 
     private static Settings defaultInstance;
@@ -51,6 +58,34 @@ public class Settings {
         return unlockWallet;
     }
 
+    public BonusSettings getBonus() {
+        return bonus;
+    }
+
+    public ClaimSettings getClaim() {
+        return claim;
+    }
+
+    public SubmitSettings getSubmit() {
+        return submit;
+    }
+
+    public SweepSettings getSweep() {
+        return sweep;
+    }
+
+    public PayoutSettings getPayout() {
+        return payout;
+    }
+
+    public DaemonSettings getDaemon() {
+        return daemon;
+    }
+
+    public MetricsSettings getMetrics() {
+        return metrics;
+    }
+
     public String getPluginURL() {
         return pluginURL;
     }
@@ -89,6 +124,13 @@ public class Settings {
         this.p2p = new P2PSettings(section.getAsJsonObject("P2P"));
         this.rpc = new RPCSettings(section.getAsJsonObject("RPC"));
         this.unlockWallet = new UnlockWalletSettings(section.getAsJsonObject("UnlockWallet"));
+        this.bonus = new BonusSettings(section.getAsJsonObject("Bonus"));
+        this.claim = new ClaimSettings(section.getAsJsonObject("Claim"));
+        this.submit = new SubmitSettings(section.getAsJsonObject("Submit"));
+        this.sweep = new SweepSettings(section.getAsJsonObject("Sweep"));
+        this.payout = new PayoutSettings(section.getAsJsonObject("Payout"));
+        this.daemon = new DaemonSettings(section.getAsJsonObject("Daemon"));
+        this.metrics = new MetricsSettings(section.getAsJsonObject("Metrics"));
         this.pluginURL = section.get("PluginURL").getAsString();
     }
 
@@ -210,4 +252,181 @@ public class Settings {
             }
         }
     }
-}
\ No newline at end of file
+
+    class BonusSettings {
+        private boolean parallel = false;
+
+        private int parallelThreshold = 512;
+
+        public boolean isParallel() {
+            return parallel;
+        }
+
+        public int getParallelThreshold() {
+            return parallelThreshold;
+        }
+
+        public BonusSettings(JsonObject section) {
+            if (section != null && !section.isJsonNull()) {
+                if (section.get("Parallel") != null)
+                    this.parallel = section.get("Parallel").getAsBoolean();
+                if (section.get("ParallelThreshold") != null)
+                    this.parallelThreshold = section.get("ParallelThreshold").getAsInt();
+            }
+        }
+    }
+
+    class ClaimSettings {
+        private int maxTransactionSize = 102400;
+
+        public int getMaxTransactionSize() {
+            return maxTransactionSize;
+        }
+
+        public ClaimSettings(JsonObject section) {
+            if (section != null && !section.isJsonNull()) {
+                if (section.get("MaxTransactionSize") != null)
+                    this.maxTransactionSize = section.get("MaxTransactionSize").getAsInt();
+            }
+        }
+    }
+
+    class SubmitSettings {
+        private int timeoutSeconds = 60;
+
+        private int maxInFlight = 16;
+
+        public int getTimeoutSeconds() {
+            return timeoutSeconds;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public SubmitSettings(JsonObject section) {
+            if (section != null && !section.isJsonNull()) {
+                if (section.get("TimeoutSeconds") != null)
+                    this.timeoutSeconds = section.get("TimeoutSeconds").getAsInt();
+                if (section.get("MaxInFlight") != null)
+                    this.maxInFlight = section.get("MaxInFlight").getAsInt();
+            }
+        }
+    }
+
+    class SweepSettings {
+        private int maxTransactionSize = 102400;
+
+        private int quietPoolSize = 50;
+
+        private int intervalSeconds = 300;
+
+        public int getMaxTransactionSize() {
+            return maxTransactionSize;
+        }
+
+        public int getQuietPoolSize() {
+            return quietPoolSize;
+        }
+
+        public int getIntervalSeconds() {
+            return intervalSeconds;
+        }
+
+        public SweepSettings(JsonObject section) {
+            if (section != null && !section.isJsonNull()) {
+                if (section.get("MaxTransactionSize") != null)
+                    this.maxTransactionSize = section.get("MaxTransactionSize").getAsInt();
+                if (section.get("QuietPoolSize") != null)
+                    this.quietPoolSize = section.get("QuietPoolSize").getAsInt();
+                if (section.get("IntervalSeconds") != null)
+                    this.intervalSeconds = section.get("IntervalSeconds").getAsInt();
+            }
+        }
+    }
+
+    class PayoutSettings {
+        private int maxOutputs = 500;
+
+        private int maxTransactionSize = 102400;
+
+        public int getMaxOutputs() {
+            return maxOutputs;
+        }
+
+        public int getMaxTransactionSize() {
+            return maxTransactionSize;
+        }
+
+        public PayoutSettings(JsonObject section) {
+            if (section != null && !section.isJsonNull()) {
+                if (section.get("MaxOutputs") != null)
+                    this.maxOutputs = section.get("MaxOutputs").getAsInt();
+                if (section.get("MaxTransactionSize") != null)
+                    this.maxTransactionSize = section.get("MaxTransactionSize").getAsInt();
+            }
+        }
+    }
+
+    class DaemonSettings {
+        private int port = 10339;
+
+        private int maxConnections = 8;
+
+        public int getPort() {
+            return port;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public DaemonSettings(JsonObject section) {
+            if (section != null && !section.isJsonNull()) {
+                if (section.get("Port") != null)
+                    this.port = section.get("Port").getAsInt();
+                if (section.get("MaxConnections") != null)
+                    this.maxConnections = section.get("MaxConnections").getAsInt();
+            }
+        }
+    }
+
+    class MetricsSettings {
+        private boolean enabled = false;
+
+        private String bindAddress = "127.0.0.1";
+
+        private int port = 9332;
+
+        private int sampleIntervalSeconds = 5;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public String getBindAddress() {
+            return bindAddress;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public int getSampleIntervalSeconds() {
+            return sampleIntervalSeconds;
+        }
+
+        public MetricsSettings(JsonObject section) {
+            if (section != null && !section.isJsonNull()) {
+                if (section.get("Enabled") != null)
+                    this.enabled = section.get("Enabled").getAsBoolean();
+                if (section.get("BindAddress") != null)
+                    this.bindAddress = section.get("BindAddress").getAsString();
+                if (section.get("Port") != null)
+                    this.port = section.get("Port").getAsInt();
+                if (section.get("SampleIntervalSeconds") != null)
+                    this.sampleIntervalSeconds = section.get("SampleIntervalSeconds").getAsInt();
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package neo.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import neo.exception.FormatException;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: CommandLineTokenizer
+ * @Package neo.services
+ * @Description: 命令行分词：按下标单遍扫描，空格分隔参数，双引号内的参数支持\n \r \t \xHH 转义
+ * @date Created in 15:20 2026/10/18
+ */
+public final class CommandLineTokenizer {
+
+    private CommandLineTokenizer() {
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:把一行命令分成参数。不带引号的参数原样截取；带引号的参数没有转义时直接截取，
+     * 有转义时才逐字符拼接
+     * @param line 命令行
+     * @throws FormatException 引号未闭合或转义不完整
+     * @date:2026/10/18
+     */
+    public static String[] tokenize(String line) {
+        List<String> args = new ArrayList<>();
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                i++;
+            } else if (c == '"') {
+                i = readQuoted(line, i + 1, args);
+            } else {
+                int start = i;
+                while (i < length && line.charAt(i) != ' ') i++;
+                args.add(line.substring(start, i));
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+    /**
+     * @param start 左引号后的第一个字符
+     * @return 右引号后的下标
+     */
+    private static int readQuoted(String line, int start, List<String> args) {
+        int length = line.length();
+        int i = start;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                args.add(line.substring(start, i));
+                return i + 1;
+            }
+            if (c == '\\') break;
+            i++;
+        }
+        if (i >= length) throw new FormatException();
+        // 遇到转义，之前的部分整段复制，之后逐字符处理
+        StringBuilder sb = new StringBuilder(length - start);
+        sb.append(line, start, i);
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                args.add(sb.toString());
+                return i + 1;
+            }
+            if (c == '\\') {
+                i = readEscape(line, i + 1, sb);
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        throw new FormatException();
+    }
+
+    /**
+     * @param i 反斜杠后的字符
+     * @return 转义序列后的下标
+     */
+    private static int readEscape(String line, int i, StringBuilder sb) {
+        if (i >= line.length()) throw new FormatException();
+        char c = line.charAt(i);
+        switch (c) {
+            case 'n':
+                sb.append('\n');
+                return i + 1;
+            case 'r':
+                sb.append('\r');
+                return i + 1;
+            case 't':
+                sb.append('\t');
+                return i + 1;
+            case 'x':
+                if (i + 2 >= line.length()) throw new FormatException();
+                int high = hex(line.charAt(i + 1));
+                int low = hex(line.charAt(i + 2));
+                if (high < 0 || low < 0) throw new FormatException();
+                sb.append((char) (high << 4 | low));
+                return i + 3;
+            default:
+                sb.append(c);
+                return i + 1;
+        }
+    }
+
+    private static int hex(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+}
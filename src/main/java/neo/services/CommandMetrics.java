@@ -0,0 +1,202 @@
+package neo.services;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: CommandMetrics
+ * @Package neo.services
+ * @Description: 命令执行统计：每条命令的调用次数、失败次数、耗时直方图(p50/p99/max)和每次调用分配的字节数，
+ * 记录时只有原子累加，没有锁
+ * @date Created in 09:40 2026/10/18
+ */
+public class CommandMetrics {
+
+    /**
+     * 直方图：小于16微秒每微秒一个桶，之后每个2的幂区间分8个桶，误差不超过12.5%
+     */
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKETS = 8;
+    private static final int BUCKETS = LINEAR_BUCKETS + (64 - 4) * SUB_BUCKETS;
+
+    /**
+     * 一条命令的统计
+     */
+    public static class Stats {
+        private final String command;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        Stats(String command) {
+            this.command = command;
+        }
+
+        void record(long micros, long allocated, boolean failed) {
+            count.increment();
+            if (failed) errors.increment();
+            totalMicros.add(micros);
+            maxMicros.accumulate(micros);
+            if (allocated > 0) allocatedBytes.add(allocated);
+            buckets.incrementAndGet(bucket(micros));
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getMaxMicros() {
+            return maxMicros.get();
+        }
+
+        public long getMeanMicros() {
+            long n = getCount();
+            return n == 0 ? 0 : totalMicros.sum() / n;
+        }
+
+        /**
+         * 每次调用平均分配的字节数，JVM不支持线程分配计数时为0
+         */
+        public long getAllocatedBytesPerCall() {
+            long n = getCount();
+            return n == 0 ? 0 : allocatedBytes.sum() / n;
+        }
+
+        /**
+         * @param quantile 0到1之间
+         * @return 所在桶的上界，不超过最大值
+         */
+        public long getPercentileMicros(double quantile) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) return Math.min(bucketUpperBound(i), getMaxMicros());
+            }
+            return getMaxMicros();
+        }
+    }
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final com.sun.management.ThreadMXBean threads;
+    private volatile boolean enabled = true;
+
+    public CommandMetrics() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean threads = null;
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            if (!threads.isThreadAllocatedMemorySupported()) threads = null;
+            else if (!threads.isThreadAllocatedMemoryEnabled()) threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        this.threads = threads;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 当前线程已分配的字节数，不支持时返回-1
+     */
+    long allocatedBytes() {
+        return threads == null ? -1 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:记录一次调用
+     * @param command 命令名
+     * @param startNanos 开始时的System.nanoTime()
+     * @param startAllocated 开始时的allocatedBytes()
+     * @param failed 是否抛出异常
+     * @date:2026/10/18
+     */
+    void record(String command, long startNanos, long startAllocated, boolean failed) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        long allocated = startAllocated < 0 ? 0 : allocatedBytes() - startAllocated;
+        stats.computeIfAbsent(command, Stats::new).record(micros, allocated, failed);
+    }
+
+    /**
+     * 按调用次数从多到少排列
+     */
+    public List<Stats> getStats() {
+        List<Stats> list = new ArrayList<>(stats.values());
+        list.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        return list;
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    public JsonObject toJson() {
+        JsonArray commands = new JsonArray();
+        for (Stats s : getStats()) {
+            JsonObject json = new JsonObject();
+            json.addProperty("command", s.getCommand());
+            json.addProperty("count", s.getCount());
+            json.addProperty("errors", s.getErrors());
+            json.addProperty("mean_us", s.getMeanMicros());
+            json.addProperty("p50_us", s.getPercentileMicros(0.5));
+            json.addProperty("p99_us", s.getPercentileMicros(0.99));
+            json.addProperty("max_us", s.getMaxMicros());
+            json.addProperty("allocated_bytes_per_call", s.getAllocatedBytesPerCall());
+            commands.add(json);
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("allocation_tracking", threads != null);
+        json.add("commands", commands);
+        return json;
+    }
+
+    static int bucket(long micros) {
+        if (micros < LINEAR_BUCKETS) return (int) Math.max(0, micros);
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    static long bucketUpperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) return bucket;
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - 3);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+}
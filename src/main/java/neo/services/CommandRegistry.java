@@ -0,0 +1,175 @@
+package neo.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: CommandRegistry
+ * @Package neo.services
+ * @Description: 命令注册表：按"命令"或"命令 子命令"(不区分大小写)查找处理方法，每条命令带有只读、
+ * 需要钱包、参数个数、用法等信息，用于分发、参数检查、并发执行和生成帮助
+ * @date Created in 10:10 2026/10/18
+ */
+public class CommandRegistry {
+
+    /**
+     * 命令处理方法，args包含命令本身，返回false表示退出
+     */
+    public interface Handler {
+        boolean execute(String[] args);
+    }
+
+    /**
+     * 一条已注册的命令，注册后用链式方法设置附加信息
+     */
+    public static class Command {
+        private final String verb;
+        private final String subVerb;
+        private final Handler handler;
+        private String group;
+        private String[] usage = new String[0];
+        private Predicate<String[]> readOnly = args -> false;
+        private boolean walletRequired;
+        private int minArgs;
+        private int maxArgs = Integer.MAX_VALUE;
+
+        Command(String verb, String subVerb, Handler handler) {
+            this.verb = verb;
+            this.subVerb = subVerb;
+            this.handler = handler;
+            this.minArgs = subVerb == null ? 1 : 2;
+        }
+
+        /**
+         * 帮助中的分组和用法，没有用法的命令不出现在帮助中
+         */
+        public Command usage(String group, String... usage) {
+            this.group = group;
+            this.usage = usage;
+            return this;
+        }
+
+        public Command readOnly() {
+            this.readOnly = args -> true;
+            return this;
+        }
+
+        /**
+         * 只读与否取决于参数，例如只在本地执行的invoke --test
+         */
+        public Command readOnlyWhen(Predicate<String[]> readOnly) {
+            this.readOnly = readOnly;
+            return this;
+        }
+
+        public Command needsWallet() {
+            this.walletRequired = true;
+            return this;
+        }
+
+        /**
+         * @param minArgs 最少参数个数，包含命令本身
+         * @param maxArgs 最多参数个数，包含命令本身
+         */
+        public Command arity(int minArgs, int maxArgs) {
+            this.minArgs = minArgs;
+            this.maxArgs = maxArgs;
+            return this;
+        }
+
+        public String getVerb() {
+            return verb;
+        }
+
+        public String getSubVerb() {
+            return subVerb;
+        }
+
+        /**
+         * "命令"或"命令 子命令"
+         */
+        public String getName() {
+            return subVerb == null ? verb : verb + ' ' + subVerb;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public String[] getUsage() {
+            return usage;
+        }
+
+        public boolean isReadOnly(String[] args) {
+            return readOnly.test(args);
+        }
+
+        public boolean isWalletRequired() {
+            return walletRequired;
+        }
+
+        public boolean accepts(String[] args) {
+            return args.length >= minArgs && args.length <= maxArgs;
+        }
+
+        public boolean execute(String[] args) {
+            return handler.execute(args);
+        }
+    }
+
+    private final Map<String, Command> commands = new HashMap<>();
+    /**
+     * 注册顺序，生成帮助时使用
+     */
+    private final List<Command> ordered = new ArrayList<>();
+
+    /**
+     * @Author:doubi.liu
+     * @description:注册命令，同名命令后注册的覆盖先注册的
+     * @param verb 命令
+     * @param subVerb 子命令，没有时为null
+     * @date:2026/10/18
+     */
+    public synchronized Command register(String verb, String subVerb, Handler handler) {
+        Command command = new Command(verb, subVerb, handler);
+        Command old = commands.put(key(verb, subVerb), command);
+        if (old != null) ordered.remove(old);
+        ordered.add(command);
+        return command;
+    }
+
+    public Command register(String verb, Handler handler) {
+        return register(verb, null, handler);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:先按"命令 子命令"查找，再按命令查找
+     * @return 没有注册时返回null
+     * @date:2026/10/18
+     */
+    public synchronized Command find(String[] args) {
+        if (args.length == 0) return null;
+        String verb = args[0].toLowerCase();
+        if (args.length > 1) {
+            Command command = commands.get(verb + ' ' + args[1].toLowerCase());
+            if (command != null) return command;
+        }
+        return commands.get(verb);
+    }
+
+    public synchronized List<Command> getCommands() {
+        return Collections.unmodifiableList(new ArrayList<>(ordered));
+    }
+
+    private static String key(String verb, String subVerb) {
+        String key = verb.toLowerCase();
+        return subVerb == null ? key : key + ' ' + subVerb.toLowerCase();
+    }
+}
@@ -1,6 +1,11 @@
 package neo.services;
 
+import java.io.BufferedReader;
 import java.io.Console;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.function.Consumer;
 
 /**
  * @author doubi.liu
@@ -14,7 +19,17 @@ public class ConsoleHelper {
     private static String title = "";
     private static String foregroundColor = ConsoleColor.WHITE;
     private static Console console = System.console();
-    private static String colordetail = "\033[0m";
+    private static ConsoleSink sink = newSink(console);
+    private static BufferedReader stdin;
+    /**
+     * 控制连接的工作线程上的输出和输入，不为null时替代控制台
+     */
+    private static final ThreadLocal<ConsoleSink> capturedSink = new ThreadLocal<>();
+    private static final ThreadLocal<BufferedReader> capturedIn = new ThreadLocal<>();
+    /**
+     * 当前线程上执行的命令是否失败，脚本据此统计失败的命令
+     */
+    private static final ThreadLocal<Boolean> commandFailed = ThreadLocal.withInitial(() -> false);
 
     public static String getTitle() {
         return title;
@@ -33,7 +48,58 @@ public class ConsoleHelper {
     }
 
     public static void setConsole(Console console) {
+        sink.flush();
         ConsoleHelper.console = console;
+        sink = newSink(console);
+    }
+
+    /**
+     * 没有终端时(输出被重定向或以后台方式运行)退回到带缓冲的标准输出，不输出颜色码
+     */
+    private static ConsoleSink newSink(Console console) {
+        return console != null ? new ConsoleSink(console.writer(), 8192, 100, true)
+                : new ConsoleSink(ConsoleSink.stdout(), 8192, 100, false);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:当前线程的输出写到out，输入从in读取，不带颜色码，直到调用endCapture
+     * @date:2026/10/18
+     */
+    public static void capture(Writer out, BufferedReader in) {
+        capturedSink.set(new ConsoleSink(out, 8192, 100, false));
+        capturedIn.set(in);
+    }
+
+    public static void endCapture() {
+        ConsoleSink captured = capturedSink.get();
+        capturedSink.remove();
+        capturedIn.remove();
+        if (captured != null) captured.flush();
+    }
+
+    /**
+     * 当前线程的输出是否被重定向到控制连接或脚本
+     */
+    public static boolean isCaptured() {
+        return capturedSink.get() != null;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:返回写到当前线程输出的行输出，用于异步回调等在其它线程上执行的代码，
+     * 命令在控制连接或脚本中执行时输出仍然回到该连接或脚本
+     * @date:2026/10/18
+     */
+    public static Consumer<String> lineWriter() {
+        ConsoleSink target = sink();
+        String color = foregroundColor;
+        return msg -> target.writeLine(color, msg);
+    }
+
+    private static ConsoleSink sink() {
+        ConsoleSink captured = capturedSink.get();
+        return captured != null ? captured : sink;
     }
 
     public static void clear() {
@@ -51,30 +117,94 @@ public class ConsoleHelper {
     }
 
     public static void write(String msg) {
-        console.writer().write(foregroundColor + msg + colordetail);
+        sink().write(foregroundColor, msg);
     }
 
     public static void write(char msg) {
-        console.writer().write(foregroundColor + msg + colordetail);
+        sink().write(foregroundColor, msg);
     }
 
     public static void writeLine(String msg) {
-        console.writer().write(foregroundColor+msg + "\n" + colordetail);
+        sink().writeLine(foregroundColor, msg);
     }
 
     public static void writeLine() {
-        console.writer().write("\n");
+        sink().writeLine();
     }
 
+    /**
+     * @Author:doubi.liu
+     * @description:输出错误信息，并把当前线程上执行的命令记为失败
+     * @date:2026/10/18
+     */
+    public static void writeError(String msg) {
+        commandFailed.set(true);
+        writeLine(msg);
+    }
+
+    /**
+     * 把当前线程上执行的命令记为失败，用于错误已由其它线程输出的情况
+     */
+    public static void setCommandFailed() {
+        commandFailed.set(true);
+    }
+
+    public static boolean isCommandFailed() {
+        return commandFailed.get();
+    }
+
+    /**
+     * 命令开始执行前调用
+     */
+    public static void resetCommandFailed() {
+        commandFailed.set(false);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:当前线程开始批量输出，整行输出不再逐行刷新，直到endBatch
+     * @date:2026/10/18
+     */
+    public static void beginBatch() {
+        sink().beginBatch();
+    }
+
+    public static void endBatch() {
+        sink().endBatch();
+    }
+
+    public static void flush() {
+        sink().flush();
+    }
 
     public static String readLine() {
-        return console.readLine();
+        sink().flush();
+        BufferedReader in = capturedIn.get();
+        if (in == null && console != null) return console.readLine();
+        try {
+            return (in != null ? in : getStdin()).readLine();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
 
     public static char[] readPassWord(String prompt){
-        return console.readPassword(foregroundColor+prompt+colordetail);
+        if (capturedIn.get() == null && console != null) {
+            sink().flush();
+            return console.readPassword(foregroundColor + prompt + ConsoleSink.RESET);
+        }
+        // 控制连接或没有终端时无法关闭回显，直接读取一行
+        write(prompt);
+        String line = readLine();
+        return line == null ? null : line.toCharArray();
     }
+
+    private static synchronized BufferedReader getStdin() {
+        if (stdin == null) stdin = new BufferedReader(new InputStreamReader(System.in));
+        return stdin;
+    }
+
     class ConsoleColor {
         public final static String WHITE = "\033[30;4m";
         public final static String YELLOW = "\033[33;4m";
@@ -1,11 +1,15 @@
 package neo.services;
 
-import java.io.BufferedReader;
 import java.io.Console;
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import neo.exception.FormatException;
 import neo.log.notr.TR;
@@ -34,146 +38,194 @@ public abstract class ConsoleServiceBase {
 
     protected boolean showPrompt=true;
 
+    /**
+     * 后台模式下控制端口的监听端口，0表示随机端口
+     */
+    protected int getControlPort() {
+        return 10339;
+    }
+
+    /**
+     * 后台模式下同时处理的最大控制连接数
+     */
+    protected int getControlMaxConnections() {
+        return 8;
+    }
+
+    private final CommandRegistry commands = new CommandRegistry();
+    private final CommandMetrics metrics = new CommandMetrics();
+
+    public ConsoleServiceBase() {
+        commands.register("version", args -> {
+            ConsoleHelper.writeLine("2.9.0");
+            return true;
+        }).usage("Normal Commands", "version").readOnly().arity(1, 1);
+        commands.register("help", this::onHelpCommand).usage("Normal Commands", "help [plugin-name]")
+                .readOnly().arity(1, 2);
+        commands.register("clear", args -> {
+            ConsoleHelper.clear();
+            return true;
+        }).usage("Normal Commands", "clear").arity(1, 1);
+        commands.register("exit", args -> false).usage("Normal Commands", "exit").arity(1, 1);
+        commands.register("run", this::onRunCommand).usage("Normal Commands", "run <file>").arity(2, 2);
+        commands.register("show", "metrics", this::onShowMetricsCommand).usage("Normal Commands",
+                "show metrics [json|reset]").readOnly().arity(2, 3);
+    }
+
+    /**
+     * 命令注册表，子类和插件在这里注册自己的命令
+     */
+    public CommandRegistry getCommands() {
+        return commands;
+    }
+
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:分发命令并记录耗时和分配的字节数，注册表中没有的命令记在"(other)"下
+     * @date:2026/10/18
+     */
     protected boolean onCommand(String[] args) {
-        switch (args[0].toLowerCase()) {
-            case "clear":
-                ConsoleHelper.clear();
-                return true;
-            case "exit":
-                return false;
-            case "version":
-                ConsoleHelper.writeLine("2.9.0");
-                return true;
-            default:
-                ConsoleHelper.writeLine("error: command not found " + args[0]);
-                return true;
+        CommandRegistry.Command command = commands.find(args);
+        ConsoleHelper.resetCommandFailed();
+        if (!metrics.isEnabled()) return dispatch(command, args);
+        long start = System.nanoTime();
+        long allocated = metrics.allocatedBytes();
+        boolean failed = true;
+        try {
+            boolean running = dispatch(command, args);
+            failed = ConsoleHelper.isCommandFailed();
+            return running;
+        } finally {
+            metrics.record(command == null ? "(other)" : command.getName(), start, allocated, failed);
         }
     }
 
-    protected abstract void onStart(String[] args);
+    /**
+     * 命令通过ConsoleHelper.writeError输出错误时，执行后ConsoleHelper.isCommandFailed()为true
+     */
+    private boolean dispatch(CommandRegistry.Command command, String[] args) {
+        if (command == null) return onUnknownCommand(args);
+        if (!command.accepts(args)) {
+            for (String usage : command.getUsage())
+                ConsoleHelper.writeError(String.format("usage: %s", usage));
+            if (command.getUsage().length == 0) ConsoleHelper.writeError("error");
+            return true;
+        }
+        if (command.isWalletRequired() && !checkWallet()) return true;
+        return command.execute(args);
+    }
 
-    protected abstract void onStop();
+    private boolean onShowMetricsCommand(String[] args) {
+        if (args.length == 3 && args[2].equalsIgnoreCase("json")) {
+            ConsoleHelper.writeLine(metrics.toJson().toString());
+            return true;
+        }
+        if (args.length == 3 && args[2].equalsIgnoreCase("reset")) {
+            metrics.reset();
+            ConsoleHelper.writeLine("metrics reset");
+            return true;
+        }
+        ConsoleHelper.writeLine(String.format("%-24s %8s %6s %10s %10s %10s %12s", "command", "count",
+                "errors", "p50", "p99", "max", "alloc/call"));
+        for (CommandMetrics.Stats stats : metrics.getStats()) {
+            ConsoleHelper.writeLine(String.format("%-24s %8d %6d %10s %10s %10s %12s", stats.getCommand(),
+                    stats.getCount(), stats.getErrors(), millis(stats.getPercentileMicros(0.5)), millis(stats
+                            .getPercentileMicros(0.99)), millis(stats.getMaxMicros()), bytes(stats
+                            .getAllocatedBytesPerCall())));
+        }
+        return true;
+    }
 
-    private static String[] parseCommandLine(String line) {
-        List<String> outputArgs = new ArrayList<String>();
-        StringReader reader = new StringReader(line);
+    private static String millis(long micros) {
+        return String.format("%.3fms", micros / 1000.0);
+    }
 
-        while (true) {
-            try {
-                reader.mark(line.length());
-                int c = reader.read();
-                reader.reset();
-                switch (c) {
-                    case -1:
-                        return outputArgs.toArray(new String[0]);
-                    case ' ':
-                        reader.read();
-                        break;
-                    case '\"':
-                        outputArgs.add(parseCommandLineString(reader, line.length()));
-                        break;
-                    default:
-                        outputArgs.add(parseCommandLineArgument(reader));
-                        break;
-                }
-            } catch (IOException e) {
-                TR.warn(e.getMessage());
-                throw new RuntimeException(e);
-            }
-        }
+    private static String bytes(long bytes) {
+        if (bytes < 1024) return bytes + "B";
+        if (bytes < 1024 * 1024) return String.format("%.1fKB", bytes / 1024.0);
+        return String.format("%.1fMB", bytes / (1024.0 * 1024));
+    }
+
+    /**
+     * 注册表中没有的命令
+     */
+    protected boolean onUnknownCommand(String[] args) {
+        ConsoleHelper.writeError("error: command not found " + args[0]);
+        return true;
+    }
 
+    /**
+     * 需要钱包的命令执行前调用，没有打开钱包时输出提示并返回false
+     */
+    protected boolean checkWallet() {
+        return true;
     }
 
-    private static String parseCommandLineArgument(StringReader reader1) {
-        BufferedReader reader = new BufferedReader(reader1);
+    /**
+     * @Author:doubi.liu
+     * @description:按注册表生成帮助，同组的命令按注册顺序列出
+     * @date:2026/10/18
+     */
+    protected boolean onHelpCommand(String[] args) {
+        Map<String, StringBuilder> groups = new LinkedHashMap<>();
+        for (CommandRegistry.Command command : commands.getCommands()) {
+            if (command.getGroup() == null) continue;
+            StringBuilder sb = groups.computeIfAbsent(command.getGroup(), k -> new StringBuilder());
+            for (String usage : command.getUsage()) sb.append('\t').append(usage).append('\n');
+        }
         StringBuilder sb = new StringBuilder();
-        while (true) {
-            int c = 0;
-            try {
-                c = reader.read();
-            } catch (IOException e) {
-                TR.warn(e.getMessage());
-                throw new RuntimeException(e);
+        for (Map.Entry<String, StringBuilder> group : groups.entrySet())
+            sb.append(group.getKey()).append(":\n").append(group.getValue());
+        ConsoleHelper.write(sb.toString());
+        return true;
+    }
 
-            }
-            switch (c) {
-                case -1:
-                case ' ':
-                    return sb.toString();
-                default:
-                    sb.append((char) c);
-                    break;
-            }
+    /**
+     * @Author:doubi.liu
+     * @description:命令是否只读，只读命令在脚本和控制端口中可以并行执行
+     * @date:2026/10/18
+     */
+    protected boolean isReadOnly(String[] args) {
+        CommandRegistry.Command command = commands.find(args);
+        return command != null && command.isReadOnly(args);
+    }
+
+    private boolean onRunCommand(String[] args) {
+        ScriptRunner.Result result = runScript(args[1]);
+        if (result == null) {
+            ConsoleHelper.setCommandFailed();
+        } else {
+            ConsoleHelper.writeLine(String.format("script finished: %d commands, %d failed", result
+                    .commands, result.failed));
+            if (result.failed > 0) ConsoleHelper.setCommandFailed();
         }
+        return result == null || !result.exited;
     }
 
-    private static String parseCommandLineString(StringReader reader1, int length) {
-        BufferedReader reader = new BufferedReader(reader1);
+    /**
+     * @return 文件无法读取时返回null
+     */
+    private ScriptRunner.Result runScript(String path) {
+        List<String> lines;
         try {
-            if (reader.read() != '\"')
-                throw new FormatException();
+            lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
         } catch (IOException e) {
-            TR.warn(e.getMessage());
-            throw new RuntimeException(e);
-        }
-        StringBuilder sb = new StringBuilder();
-        while (true) {
-            try {
-                reader.mark(length);
-                int c = 0;
-                c = reader.read();
-                reader.reset();
-                switch (c) {
-                    case '\"':
-                        reader.read();
-                        return sb.toString();
-                    case '\\':
-                        sb.append(parseEscapeCharacter(reader));
-                        break;
-                    default:
-                        reader.read();
-                        sb.append((char) c);
-                        break;
-                }
-            } catch (IOException e) {
-                TR.warn(e.getMessage());
-                throw new RuntimeException(e);
-            }
+            ConsoleHelper.writeError(String.format("error: can not read %s: %s", path, e.getMessage()));
+            return null;
         }
+        return new ScriptRunner(this, Runtime.getRuntime().availableProcessors()).run(lines);
     }
 
-    private static char parseEscapeCharacter(BufferedReader reader) {
-        try {
-            if (reader.read() != '\\')
-                throw new FormatException();
-            int c = reader.read();
-            switch (c) {
-                case -1:
-                    throw new FormatException();
-                case 'n':
-                    return '\n';
-                case 'r':
-                    return '\r';
-                case 't':
-                    return '\t';
-                case 'x':
-                    StringBuilder sb = new StringBuilder();
-                    for (int i = 0; i < 2; i++) {
-                        int h = reader.read();
-                        if (h >= '0' && h <= '9' || h >= 'A' && h <= 'F' || h >= 'a' && h <= 'f')
-                            sb.append((char) h);
-                        else
-                            throw new FormatException();
-                    }
+    protected abstract void onStart(String[] args);
 
-                    return (char) (Byte.parseByte(sb.toString(), 16) & 0xff);
-                default:
-                    return (char) c;
-            }
-        } catch (IOException e) {
-            TR.warn(e.getMessage());
-            throw new RuntimeException(e);
-        }
+    protected abstract void onStop();
+
+    static String[] parseCommandLine(String line) {
+        return CommandLineTokenizer.tokenize(line);
     }
 
     public static String readPassword(String prompt) {
@@ -181,7 +233,8 @@ public abstract class ConsoleServiceBase {
         char[] result=ConsoleHelper.readPassWord(prompt);
         ConsoleHelper.setForegroundColor(ConsoleHelper.ConsoleColor.WHITE);
         ConsoleHelper.writeLine();
-        return new String(result);
+        // 输入结束时读不到内容
+        return result == null ? "" : new String(result);
 /*
 
         final String t = " !\"#$%&'()*+,-./0123456789:;" +
@@ -292,11 +345,97 @@ public abstract class ConsoleServiceBase {
         } else {
             ServiceBase.Run(new ServiceProxy(this));
         }*/
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "/daemon":
+                case "--daemon":
+                case "-d":
+                    runDaemon(args);
+                    return;
+                case "/script":
+                case "--script":
+                    if (i + 1 < args.length) {
+                        System.exit(runScriptMode(args, args[i + 1]));
+                        return;
+                    }
+                    break;
+            }
+        }
         onStart(args);
         runConsole();
         onStop();
     }
 
+    /**
+     * @Author:doubi.liu
+     * @description:后台模式：不读控制台，命令从本地控制端口接收，收到SIGTERM时关闭控制端口并调用onStop
+     * @date:2026/10/18
+     */
+    private void runDaemon(String[] args) {
+        onStart(args);
+        ControlServer server = new ControlServer(this, getControlPort(), getControlMaxConnections());
+        try {
+            server.start();
+        } catch (IOException e) {
+            TR.warn(e);
+            onStop();
+            throw new RuntimeException(e);
+        }
+        ConsoleHelper.writeLine(String.format("%s control port: %s:%d", getServiceName(), "127.0.0.1",
+                server.getLocalPort()));
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(10000);
+            onStop();
+            ConsoleHelper.flush();
+            stopped.countDown();
+        }, "shutdown"));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:不进入交互控制台，执行脚本后退出
+     * @return 进程退出码：0全部成功，1有命令失败，2脚本无法读取
+     * @date:2026/10/18
+     */
+    private int runScriptMode(String[] args, String path) {
+        onStart(args);
+        ScriptRunner.Result result;
+        try {
+            result = runScript(path);
+        } finally {
+            onStop();
+            ConsoleHelper.flush();
+        }
+        if (result == null) return 2;
+        return result.failed > 0 ? 1 : 0;
+    }
+
+    /**
+     * @return 是否继续接收命令
+     */
+    boolean executeCommand(String[] args) {
+        // 命令的输出批量刷新，命令结束时全部写出
+        ConsoleHelper.beginBatch();
+        try {
+            return onCommand(args);
+        } catch (Exception ex) {
+            if (debugFlag) {
+                ConsoleHelper.writeLine(String.format("error: {0}", ex.getMessage()));
+            } else {
+                ConsoleHelper.writeLine("error");
+            }
+            return true;
+        } finally {
+            ConsoleHelper.endBatch();
+        }
+    }
+
     private void runConsole() {
         boolean running = true;
         //if (Environment.OSVersion.Platform == PlatformID.Win32NT)
@@ -321,20 +460,19 @@ public abstract class ConsoleServiceBase {
             if (line == null) break;
             ConsoleHelper.setForegroundColor(ConsoleHelper.ConsoleColor.WHITE);
 
-            String[] args = parseCommandLine(line);
-            if (args.length == 0)
-                continue;
+            String[] args;
             try {
-                running = onCommand(args);
-            } catch (Exception ex) {
-                if (debugFlag) {
-                    ConsoleHelper.writeLine(String.format("error: {0}", ex.getMessage()));
-                } else {
-                    ConsoleHelper.writeLine("error");
-                }
+                args = parseCommandLine(line);
+            } catch (FormatException e) {
+                ConsoleHelper.writeLine("error: unterminated quote or invalid escape");
+                continue;
             }
+            if (args.length == 0)
+                continue;
+            running = executeCommand(args);
         }
 
         ConsoleHelper.setForegroundColor(ConsoleHelper.ConsoleColor.DEFAULT);
+        ConsoleHelper.flush();
     }
 }
\ No newline at end of file
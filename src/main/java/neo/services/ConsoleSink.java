@@ -0,0 +1,127 @@
+package neo.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: ConsoleSink
+ * @Package neo.services
+ * @Description: 控制台输出缓冲：复用同一个缓冲区，颜色变化时才输出颜色码，按批刷新
+ * @date Created in 09:20 2026/10/18
+ */
+class ConsoleSink {
+
+    static final String RESET = "\033[0m";
+
+    private final Writer out;
+    private final boolean colors;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final StringBuilder buffer;
+    private char[] chars;
+    /**
+     * 缓冲区中最后输出的颜色，null表示已恢复默认颜色
+     */
+    private String color;
+    private long lastFlush = System.nanoTime();
+    /**
+     * 批量输出的线程，该线程的整行输出按大小或时间间隔刷新，其它线程每行刷新一次
+     */
+    private volatile Thread batchThread;
+
+    /**
+     * @param out                输出
+     * @param flushSize          缓冲区达到多少字符时刷新
+     * @param flushIntervalMillis 批量输出时最长多久刷新一次
+     * @param colors             是否输出颜色码
+     */
+    ConsoleSink(Writer out, int flushSize, long flushIntervalMillis, boolean colors) {
+        this.out = out;
+        this.colors = colors;
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = flushIntervalMillis * 1000000L;
+        this.buffer = new StringBuilder(flushSize + 256);
+        this.chars = new char[flushSize + 256];
+    }
+
+    /**
+     * 没有终端时使用带缓冲的标准输出
+     */
+    static Writer stdout() {
+        return new BufferedWriter(new OutputStreamWriter(System.out));
+    }
+
+    /**
+     * 不带换行的输出一般是提示或进度，立即刷新
+     */
+    synchronized void write(String color, String msg) {
+        setColor(color);
+        buffer.append(msg);
+        flush();
+    }
+
+    synchronized void write(String color, char msg) {
+        setColor(color);
+        buffer.append(msg);
+        flush();
+    }
+
+    synchronized void writeLine(String color, String msg) {
+        setColor(color);
+        buffer.append(msg).append('\n');
+        lineWritten();
+    }
+
+    synchronized void writeLine() {
+        buffer.append('\n');
+        lineWritten();
+    }
+
+    void beginBatch() {
+        batchThread = Thread.currentThread();
+    }
+
+    void endBatch() {
+        batchThread = null;
+        flush();
+    }
+
+    /**
+     * 恢复默认颜色并把缓冲区写出
+     */
+    synchronized void flush() {
+        if (color != null) {
+            buffer.append(RESET);
+            color = null;
+        }
+        int length = buffer.length();
+        if (length > 0) {
+            if (chars.length < length) chars = new char[length];
+            buffer.getChars(0, length, chars, 0);
+            buffer.setLength(0);
+        }
+        try {
+            if (length > 0) out.write(chars, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        lastFlush = System.nanoTime();
+    }
+
+    private void setColor(String color) {
+        if (!colors || color.equals(this.color)) return;
+        buffer.append(color);
+        this.color = color;
+    }
+
+    private void lineWritten() {
+        if (Thread.currentThread() != batchThread || buffer.length() >= flushSize
+                || System.nanoTime() - lastFlush >= flushIntervalNanos)
+            flush();
+    }
+}
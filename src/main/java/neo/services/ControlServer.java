@@ -0,0 +1,208 @@
+package neo.services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import neo.exception.FormatException;
+import neo.log.notr.TR;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: ControlServer
+ * @Package neo.services
+ * @Description: 后台模式的本地控制端口：只监听回环地址，每行一条命令，交给控制台的命令分发执行，
+ * 命令输出写回该连接，以单独一行"."结束，输出中以"."开头的行前面再加一个"."
+ * @date Created in 14:05 2026/10/18
+ */
+public class ControlServer {
+
+    private final ConsoleServiceBase service;
+    private final int port;
+    private final int maxConnections;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    /**
+     * 只读命令持有读锁并行执行，修改钱包等共享状态的命令持有写锁逐条执行
+     */
+    private final ReadWriteLock commandLock = new ReentrantReadWriteLock(true);
+    private ServerSocket serverSocket;
+    private ExecutorService workers;
+    private Thread acceptThread;
+
+    /**
+     * @param service        命令分发
+     * @param port           监听端口
+     * @param maxConnections 同时处理的最大连接数，超出的连接排队等待
+     */
+    public ControlServer(ConsoleServiceBase service, int port, int maxConnections) {
+        this.service = service;
+        this.port = port;
+        this.maxConnections = maxConnections;
+    }
+
+    public synchronized void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        workers = Executors.newFixedThreadPool(maxConnections, r -> {
+            Thread thread = new Thread(r, "control-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        acceptThread = new Thread(this::acceptLoop, "control-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:停止接受新连接，关闭现有连接，等待正在执行的命令结束
+     * @param timeoutMillis 等待命令结束的最长时间
+     * @date:2026/10/18
+     */
+    public synchronized void stop(long timeoutMillis) {
+        if (serverSocket == null) return;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            TR.warn(e);
+        }
+        for (Socket socket : connections) closeQuietly(socket);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        serverSocket = null;
+    }
+
+    private void acceptLoop() {
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                // 端口已关闭
+                return;
+            } catch (IOException e) {
+                TR.warn(e);
+                continue;
+            }
+            connections.add(socket);
+            try {
+                workers.execute(() -> handle(socket));
+            } catch (Exception e) {
+                connections.remove(socket);
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            DotStuffingWriter stuffed = new DotStuffingWriter(out);
+            String line;
+            boolean running = true;
+            while (running && (line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                String[] args;
+                try {
+                    args = ConsoleServiceBase.parseCommandLine(line);
+                } catch (FormatException e) {
+                    // 引号未闭合或转义不完整，回复错误后继续读取下一条命令
+                    out.write("error\n.\n");
+                    out.flush();
+                    continue;
+                }
+                if (args.length == 0) continue;
+                Lock lock = service.isReadOnly(args) ? commandLock.readLock() : commandLock.writeLock();
+                ConsoleHelper.capture(stuffed, in);
+                lock.lock();
+                try {
+                    running = service.executeCommand(args);
+                } finally {
+                    lock.unlock();
+                    ConsoleHelper.endCapture();
+                }
+                // 补的换行也经过stuffed，下一条命令的输出从行首开始
+                if (!stuffed.lineStart) stuffed.write('\n');
+                out.write(".\n");
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 客户端断开或端口关闭
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 输出中以"."开头的行前面加一个"."，与结束行区分
+     */
+    private static class DotStuffingWriter extends FilterWriter {
+        private boolean lineStart = true;
+
+        DotStuffingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (lineStart && c == '.') out.write('.');
+            out.write(c);
+            lineStart = c == '\n';
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int start = off, end = off + len;
+            for (int i = off; i < end; i++) {
+                if (lineStart && cbuf[i] == '.') {
+                    out.write(cbuf, start, i - start);
+                    out.write('.');
+                    start = i;
+                }
+                lineStart = cbuf[i] == '\n';
+            }
+            out.write(cbuf, start, end - start);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            write(str.toCharArray(), off, len);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package neo.services;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import neo.exception.FormatException;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: ScriptRunner
+ * @Package neo.services
+ * @Description: 批量执行脚本中的命令：只读命令并行执行，修改状态的命令等前面的命令全部结束后按顺序执行，
+ * 每条命令的输出单独收集，按脚本顺序输出
+ * @date Created in 10:30 2026/10/18
+ */
+public class ScriptRunner {
+
+    /**
+     * 执行结果
+     */
+    public static class Result {
+        public int commands;
+        public int failed;
+        /**
+         * 脚本中执行了exit
+         */
+        public boolean exited;
+    }
+
+    private static class Command {
+        final String line;
+        final String[] args;
+        Future<Boolean> future;
+        String output;
+        boolean failed;
+
+        Command(String line, String[] args) {
+            this.line = line;
+            this.args = args;
+        }
+    }
+
+    private final ConsoleServiceBase service;
+    private final int parallelism;
+
+    /**
+     * @param service     命令分发
+     * @param parallelism 并行执行只读命令的线程数
+     */
+    public ScriptRunner(ConsoleServiceBase service, int parallelism) {
+        this.service = service;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:执行脚本，空行和以#开头的行忽略
+     * @param lines 脚本内容，每行一条命令
+     * @date:2026/10/18
+     */
+    public Result run(List<String> lines) {
+        Result result = new Result();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        Deque<Command> pending = new ArrayDeque<>();
+        try {
+            for (String text : lines) {
+                String line = text.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] args;
+                try {
+                    args = ConsoleServiceBase.parseCommandLine(line);
+                } catch (FormatException e) {
+                    // 无法解析的行记为失败的命令，按顺序输出后继续执行后面的命令
+                    Command command = new Command(line, new String[0]);
+                    command.failed = true;
+                    command.output = "error: unterminated quote or invalid escape\n";
+                    command.future = CompletableFuture.completedFuture(true);
+                    pending.add(command);
+                    continue;
+                }
+                if (args.length == 0) continue;
+                Command command = new Command(line, args);
+                if (service.isReadOnly(args)) {
+                    command.future = workers.submit(() -> execute(command));
+                    pending.add(command);
+                    drain(pending, parallelism * 4, result);
+                } else {
+                    // 修改状态的命令作为屏障：等前面的只读命令全部结束
+                    drain(pending, 0, result);
+                    boolean running = execute(command);
+                    print(command, result);
+                    if (!running) {
+                        result.exited = true;
+                        break;
+                    }
+                }
+            }
+            drain(pending, 0, result);
+        } finally {
+            workers.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * 按脚本顺序输出已结束的命令，直到未输出的命令不超过maxPending
+     */
+    private static void drain(Deque<Command> pending, int maxPending, Result result) {
+        while (!pending.isEmpty() && (pending.size() > maxPending || pending.peek().future.isDone())) {
+            Command command = pending.poll();
+            try {
+                command.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                command.failed = true;
+                command.output = String.format("error: %s\n", e.getCause().getMessage());
+            }
+            print(command, result);
+        }
+    }
+
+    /**
+     * 在当前线程上执行命令，输出收集到command.output，命令要求输入时读到的是null
+     *
+     * @return 是否继续执行后面的命令
+     */
+    private boolean execute(Command command) {
+        StringWriter out = new StringWriter();
+        ConsoleHelper.capture(out, new BufferedReader(new StringReader("")));
+        boolean running = true;
+        try {
+            running = service.onCommand(command.args);
+            // 命令没有抛出异常，但输出了错误，例如参数错误、余额不足、密码错误
+            if (ConsoleHelper.isCommandFailed()) command.failed = true;
+        } catch (Exception e) {
+            command.failed = true;
+            ConsoleHelper.writeLine(String.format("error: %s", e.getMessage()));
+        } finally {
+            ConsoleHelper.endCapture();
+        }
+        command.output = out.toString();
+        return running;
+    }
+
+    private static void print(Command command, Result result) {
+        result.commands++;
+        if (command.failed) result.failed++;
+        ConsoleHelper.writeLine(String.format("> %s", command.line));
+        ConsoleHelper.write(command.output);
+    }
+}
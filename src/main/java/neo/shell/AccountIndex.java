@@ -0,0 +1,173 @@
+package neo.shell;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import neo.UInt160;
+import neo.cryptography.ecc.ECC;
+import neo.cryptography.ecc.ECPoint;
+import neo.smartcontract.ContractParametersContext;
+import neo.wallets.Helper;
+import neo.wallets.KeyPair;
+import neo.wallets.Wallet;
+import neo.wallets.WalletAccount;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: AccountIndex
+ * @Package neo.shell
+ * @Description: 钱包账户按脚本hash和公钥建立的哈希索引，公钥从标准合约脚本中读取，不需要解密私钥
+ * @date Created in 10:15 2026/10/18
+ */
+public class AccountIndex {
+
+    /**
+     * 标准单签合约脚本：PUSHBYTES33 + 压缩公钥 + CHECKSIG
+     */
+    private static final int STANDARD_SCRIPT_LENGTH = 35;
+    private static final byte PUSHBYTES33 = 0x21;
+    private static final byte CHECKSIG = (byte) 0xAC;
+
+    private final Wallet wallet;
+    private final Map<UInt160, WalletAccount> byScriptHash = new HashMap<>();
+    /**
+     * key为33字节压缩公钥，保持账户顺序
+     */
+    private final Map<ByteBuffer, WalletAccount> byPublicKey = new LinkedHashMap<>();
+    private boolean stale = true;
+
+    public AccountIndex(Wallet wallet) {
+        this.wallet = wallet;
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    /**
+     * 账户被批量创建、导入或删除后调用，下次查询时重新加载
+     */
+    public synchronized void invalidate() {
+        stale = true;
+    }
+
+    public synchronized void add(WalletAccount account) {
+        if (stale) return;
+        put(account);
+    }
+
+    public synchronized void remove(UInt160 scriptHash) {
+        if (stale) return;
+        WalletAccount account = byScriptHash.remove(scriptHash);
+        if (account == null) return;
+        byte[] publicKey = publicKey(account);
+        if (publicKey != null) byPublicKey.remove(ByteBuffer.wrap(publicKey), account);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:查找账户，索引中没有时再查钱包并加入索引，用于RPC或插件创建的账户
+     * @return 找不到时返回null
+     * @date:2026/10/18
+     */
+    public synchronized WalletAccount get(UInt160 scriptHash) {
+        ensureFresh();
+        WalletAccount account = live(byScriptHash.get(scriptHash));
+        if (account != null) return account;
+        account = wallet.getAccount(scriptHash);
+        if (account != null) put(account);
+        return account;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:查找持有该公钥私钥的账户
+     * @return 找不到时返回null
+     * @date:2026/10/18
+     */
+    public synchronized WalletAccount get(ECPoint publicKey) {
+        ensureFresh();
+        return live(byPublicKey.get(ByteBuffer.wrap(publicKey.getEncoded(true))));
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:与Wallet.sign相同，用索引查找每个待签名脚本hash对应的账户
+     * @return 至少添加了一个签名时返回true
+     * @date:2026/10/18
+     */
+    public boolean sign(ContractParametersContext context) {
+        boolean success = false;
+        for (UInt160 scriptHash : context.getScriptHashes()) {
+            WalletAccount account = get(scriptHash);
+            if (account == null || !account.hasKey()) continue;
+            KeyPair key = account.getKey();
+            byte[] signature = Helper.sign(context.verifiable, key);
+            success |= context.addSignature(account.contract, key.publicKey, signature);
+        }
+        return success;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:有私钥的账户的公钥，按账户顺序
+     * @date:2026/10/18
+     */
+    public synchronized List<ECPoint> getPublicKeys() {
+        ensureFresh();
+        List<ECPoint> publicKeys = new ArrayList<>(byPublicKey.size());
+        for (ByteBuffer key : byPublicKey.keySet())
+            publicKeys.add(ECPoint.decodePoint(key.array(), ECC.Secp256r1.getCurve()));
+        return publicKeys;
+    }
+
+    /**
+     * 账户可能已被RPC或插件从钱包中删除，此时从索引中移除
+     */
+    private WalletAccount live(WalletAccount account) {
+        if (account == null || wallet.contains(account.scriptHash)) return account;
+        remove(account.scriptHash);
+        return null;
+    }
+
+    private void ensureFresh() {
+        if (!stale) return;
+        byScriptHash.clear();
+        byPublicKey.clear();
+        for (WalletAccount account : wallet.getAccounts()) put(account);
+        stale = false;
+    }
+
+    private void put(WalletAccount account) {
+        byScriptHash.put(account.scriptHash, account);
+        byte[] publicKey = publicKey(account);
+        if (publicKey == null) return;
+        // 同一公钥优先对应标准账户，多签等账户只在没有标准账户时记录
+        if (isStandard(account)) byPublicKey.put(ByteBuffer.wrap(publicKey), account);
+        else byPublicKey.putIfAbsent(ByteBuffer.wrap(publicKey), account);
+    }
+
+    private static boolean isStandard(WalletAccount account) {
+        byte[] script = account.contract == null ? null : account.contract.script;
+        return script != null && script.length == STANDARD_SCRIPT_LENGTH && script[0] == PUSHBYTES33
+                && script[STANDARD_SCRIPT_LENGTH - 1] == CHECKSIG;
+    }
+
+    /**
+     * 标准合约直接从脚本中取公钥，其它有私钥的账户才需要解密
+     */
+    private static byte[] publicKey(WalletAccount account) {
+        if (!account.hasKey()) return null;
+        if (isStandard(account)) {
+            byte[] publicKey = new byte[33];
+            System.arraycopy(account.contract.script, 1, publicKey, 0, 33);
+            return publicKey;
+        }
+        return account.getKey().publicKey.getEncoded(true);
+    }
+}
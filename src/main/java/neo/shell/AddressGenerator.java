@@ -0,0 +1,182 @@
+package neo.shell;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import neo.wallets.NEP6.NEP6Wallet;
+import neo.wallets.Wallet;
+import neo.wallets.WalletAccount;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: AddressGenerator
+ * @Package neo.shell
+ * @Description: 批量生成地址：多线程创建账户，结果无锁收集，地址流式写入文件，并分批保存钱包
+ * @date Created in 09:30 2026/10/18
+ */
+public class AddressGenerator {
+
+    /**
+     * 一次创建多个账户，由工作线程调用
+     */
+    public interface AccountFactory {
+        List<WalletAccount> create(Wallet wallet, int count);
+    }
+
+    /**
+     * 进度回调，在调用generate的线程上按时间间隔调用
+     */
+    public interface Progress {
+        void onProgress(int created, int total, double keysPerSecond);
+    }
+
+    /**
+     * 逐个调用Wallet.createAccount()
+     */
+    public static final AccountFactory SEQUENTIAL = (wallet, count) -> {
+        List<WalletAccount> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) accounts.add(wallet.createAccount());
+        return accounts;
+    };
+
+    private static final int CLAIM_SIZE = 64;
+
+    private final Wallet wallet;
+    private final AccountFactory factory;
+    private final int parallelism;
+    private final int checkpointSize;
+    private final long progressIntervalMillis;
+    /**
+     * 创建账户时持有读锁，保存钱包时持有写锁，避免保存时账户列表被并发修改
+     */
+    private final ReadWriteLock saveLock = new ReentrantReadWriteLock();
+
+    /**
+     * @param wallet                 钱包
+     * @param factory                账户创建方式
+     * @param parallelism            工作线程数
+     * @param checkpointSize         每生成多少个地址保存一次钱包并刷新输出文件
+     * @param progressIntervalMillis 进度回调的最小间隔
+     */
+    public AddressGenerator(Wallet wallet, AccountFactory factory, int parallelism, int checkpointSize,
+                            long progressIntervalMillis) {
+        this.wallet = wallet;
+        this.factory = factory;
+        this.parallelism = parallelism;
+        this.checkpointSize = checkpointSize;
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:生成count个地址，阻塞直到全部完成，返回每秒生成的密钥数
+     * @param count 地址个数
+     * @param out 地址输出，每行一个
+     * @param progress 进度回调，可以为null
+     * @date:2026/10/18
+     */
+    public double generate(int count, Writer out, Progress progress) throws IOException {
+        AtomicInteger claimed = new AtomicInteger();
+        ConcurrentLinkedQueue<String> addresses = new ConcurrentLinkedQueue<>();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        List<Future<?>> futures = new ArrayList<>(parallelism);
+        long start = System.nanoTime();
+        for (int i = 0; i < parallelism; i++) {
+            futures.add(workers.submit(() -> {
+                int from;
+                while ((from = claimed.getAndAdd(CLAIM_SIZE)) < count && !Thread.currentThread()
+                        .isInterrupted()) {
+                    int n = Math.min(CLAIM_SIZE, count - from);
+                    List<WalletAccount> accounts;
+                    saveLock.readLock().lock();
+                    try {
+                        accounts = factory.create(wallet, n);
+                    } finally {
+                        saveLock.readLock().unlock();
+                    }
+                    for (WalletAccount account : accounts) addresses.add(account.getAddress());
+                }
+            }));
+        }
+        workers.shutdown();
+        int written = 0, lastCheckpoint = 0;
+        long lastProgress = 0;
+        try {
+            while (written < count) {
+                String address = addresses.poll();
+                if (address == null) {
+                    if (checkWorkers(futures) && addresses.isEmpty()) break;
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    continue;
+                }
+                out.write(address);
+                out.write('\n');
+                written++;
+                if (written - lastCheckpoint >= checkpointSize) {
+                    checkpoint(out);
+                    lastCheckpoint = written;
+                }
+                long now = System.currentTimeMillis();
+                if (progress != null && now - lastProgress >= progressIntervalMillis) {
+                    progress.onProgress(written, count, keysPerSecond(written, start));
+                    lastProgress = now;
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+            checkpoint(out);
+        }
+        double rate = keysPerSecond(written, start);
+        if (progress != null) progress.onProgress(written, count, rate);
+        return rate;
+    }
+
+    private void checkpoint(Writer out) throws IOException {
+        out.flush();
+        if (!(wallet instanceof NEP6Wallet)) return;
+        saveLock.writeLock().lock();
+        try {
+            ((NEP6Wallet) wallet).save();
+        } finally {
+            saveLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 队列为空时检查工作线程是否异常结束，避免一直等待
+     *
+     * @return 全部工作线程都已结束
+     */
+    private static boolean checkWorkers(List<Future<?>> futures) {
+        boolean done = true;
+        for (Future<?> future : futures) {
+            if (!future.isDone()) {
+                done = false;
+                continue;
+            }
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new RuntimeException(e.getCause() != null ? e.getCause() : e);
+            }
+        }
+        return done;
+    }
+
+    private static double keysPerSecond(int count, long start) {
+        long elapsed = System.nanoTime() - start;
+        return elapsed == 0 ? 0 : count * 1e9 / elapsed;
+    }
+}
@@ -0,0 +1,227 @@
+package neo.shell;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import neo.Fixed8;
+import neo.UInt160;
+import neo.UInt256;
+import neo.csharp.Ushort;
+import neo.ledger.AssetState;
+import neo.ledger.Blockchain;
+import neo.ledger.CoinState;
+import neo.network.p2p.payloads.Block;
+import neo.network.p2p.payloads.CoinReference;
+import neo.network.p2p.payloads.Transaction;
+import neo.network.p2p.payloads.TransactionOutput;
+import neo.wallets.Coin;
+import neo.wallets.Wallet;
+import neo.wallets.WalletAccount;
+import neo.wallets.WalletTransactionEventArgs;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: AssetBalances
+ * @Package neo.shell
+ * @Description: 钱包每种资产的余额和已确认余额，随钱包交易事件增量更新，list asset只需读取汇总值
+ * @date Created in 10:05 2026/10/18
+ */
+public class AssetBalances {
+
+    /**
+     * 单个资产的汇总
+     */
+    public static class Balance {
+        public final AssetState asset;
+        public final Fixed8 balance;
+        public final Fixed8 confirmed;
+
+        Balance(AssetState asset, Fixed8 balance, Fixed8 confirmed) {
+            this.asset = asset;
+            this.balance = balance;
+            this.confirmed = confirmed;
+        }
+    }
+
+    /**
+     * 未花费的币，confirmed为false表示本地交易产生、尚未上链
+     */
+    private static class Entry {
+        final UInt256 assetId;
+        final long value;
+        boolean confirmed;
+
+        Entry(UInt256 assetId, long value, boolean confirmed) {
+            this.assetId = assetId;
+            this.value = value;
+            this.confirmed = confirmed;
+        }
+    }
+
+    private static class Totals {
+        int count;
+        long balance;
+        long confirmed;
+    }
+
+    /**
+     * 资产的名称和id不会改变，缓存后不再每次读store
+     */
+    private static final Map<UInt256, AssetState> ASSET_CACHE = new ConcurrentHashMap<>();
+
+    private final Wallet wallet;
+    private final WalletObserver walletObserver;
+    private final PersistObserver persistObserver;
+    /**
+     * 钱包交易事件先放入队列，查询时按顺序应用，不在触发事件的线程上等锁
+     */
+    private final Queue<WalletTransactionEventArgs> events = new ConcurrentLinkedQueue<>();
+    private final Consumer<WalletTransactionEventArgs> listener = events::add;
+    private final Consumer<Block> persistListener = p -> drain();
+
+    private final Map<CoinReference, Entry> entries = new HashMap<>();
+    private final Map<UInt256, Totals> totals = new HashMap<>();
+    private Set<UInt160> accounts = new HashSet<>();
+    private boolean stale = true;
+
+    /**
+     * @param walletObserver  钱包交易事件，包括控制台、RPC和插件应用到钱包的交易
+     * @param persistObserver 区块持久化时应用已排队的事件，长时间没有查询时队列不会一直增长
+     */
+    public AssetBalances(WalletObserver walletObserver, PersistObserver persistObserver) {
+        this.wallet = walletObserver.getWallet();
+        this.walletObserver = walletObserver;
+        this.persistObserver = persistObserver;
+        walletObserver.addListener(listener);
+        persistObserver.addListener(persistListener);
+    }
+
+    public void dispose() {
+        walletObserver.removeListener(listener);
+        persistObserver.removeListener(persistListener);
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    /**
+     * 钱包被重建或账户发生变化，下次查询时重新加载。RPC创建的账户在它的第一笔交易事件中发现
+     */
+    public synchronized void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:每种资产的余额，复杂度为O(资产数)
+     * @date:2026/10/18
+     */
+    public synchronized List<Balance> list() {
+        do {
+            if (stale) rebuild();
+            apply();
+        } while (stale);
+        List<Balance> result = new ArrayList<>(totals.size());
+        for (Map.Entry<UInt256, Totals> entry : totals.entrySet()) {
+            result.add(new Balance(getAsset(entry.getKey()), new Fixed8(entry.getValue().balance), new
+                    Fixed8(entry.getValue().confirmed)));
+        }
+        return result;
+    }
+
+    public static AssetState getAsset(UInt256 assetId) {
+        AssetState asset = ASSET_CACHE.get(assetId);
+        if (asset == null) {
+            asset = Blockchain.singleton().getStore().getAssets().tryGet(assetId);
+            if (asset != null) ASSET_CACHE.put(assetId, asset);
+        }
+        return asset;
+    }
+
+    private synchronized void drain() {
+        apply();
+        // 下次查询时重新加载，排队的事件已不需要
+        if (stale) events.clear();
+    }
+
+    private void apply() {
+        for (WalletTransactionEventArgs e; !stale && (e = events.poll()) != null; ) onWalletTransaction(e);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:钱包交易事件：输入变为已花费，转给钱包的输出在交易上链前记为未确认。
+     * 包括RPC和插件直接应用到钱包的交易，出现未知账户时重新加载
+     * @date:2026/10/18
+     */
+    private void onWalletTransaction(WalletTransactionEventArgs e) {
+        for (UInt160 account : e.relatedAccounts) {
+            if (!accounts.contains(account)) {
+                stale = true;
+                return;
+            }
+        }
+        for (CoinReference input : e.transaction.inputs) remove(input);
+        addOutputs(e.transaction, e.height != null);
+    }
+
+    private void addOutputs(Transaction tx, boolean confirmed) {
+        for (int i = 0; i < tx.outputs.length; i++) {
+            TransactionOutput output = tx.outputs[i];
+            if (!accounts.contains(output.scriptHash)) continue;
+            CoinReference reference = new CoinReference();
+            reference.prevHash = tx.hash();
+            reference.prevIndex = new Ushort(i);
+            Entry entry = entries.get(reference);
+            if (entry == null) {
+                add(reference, new Entry(output.assetId, output.value.getData(), confirmed));
+            } else if (confirmed && !entry.confirmed) {
+                entry.confirmed = true;
+                totals.get(entry.assetId).confirmed += entry.value;
+            }
+        }
+    }
+
+    private void add(CoinReference reference, Entry entry) {
+        entries.put(reference, entry);
+        Totals assetTotals = totals.computeIfAbsent(entry.assetId, p -> new Totals());
+        assetTotals.count++;
+        assetTotals.balance += entry.value;
+        if (entry.confirmed) assetTotals.confirmed += entry.value;
+    }
+
+    private void remove(CoinReference reference) {
+        Entry entry = entries.remove(reference);
+        if (entry == null) return;
+        Totals assetTotals = totals.get(entry.assetId);
+        assetTotals.balance -= entry.value;
+        if (entry.confirmed) assetTotals.confirmed -= entry.value;
+        if (--assetTotals.count == 0) totals.remove(entry.assetId);
+    }
+
+    private void rebuild() {
+        entries.clear();
+        totals.clear();
+        // 之前的事件已包含在读到的币中，读币期间的事件重新应用一次，结果不变
+        events.clear();
+        Set<UInt160> scriptHashes = new HashSet<>();
+        for (WalletAccount account : wallet.getAccounts()) scriptHashes.add(account.scriptHash);
+        accounts = scriptHashes;
+        for (Coin coin : wallet.getCoins()) {
+            if (coin.state.hasFlag(CoinState.Spent)) continue;
+            add(coin.reference, new Entry(coin.output.assetId, coin.output.value.getData(), coin
+                    .state.hasFlag(CoinState.Confirmed)));
+        }
+        stale = false;
+    }
+}
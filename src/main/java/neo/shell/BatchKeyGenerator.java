@@ -0,0 +1,95 @@
+package neo.shell;
+
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.math.ec.FixedPointUtil;
+import org.bouncycastle.util.BigIntegers;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import neo.wallets.Wallet;
+import neo.wallets.WalletAccount;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: BatchKeyGenerator
+ * @Package neo.shell
+ * @Description: 批量生成secp256r1密钥对：共享生成元的预计算表，一批点只做一次模逆完成归一化
+ * @date Created in 15:10 2026/10/18
+ */
+public class BatchKeyGenerator implements AddressGenerator.AccountFactory {
+
+    private static final X9ECParameters CURVE = CustomNamedCurves.getByName("secp256r1");
+    private static final BigInteger N_MINUS_ONE = CURVE.getN().subtract(BigInteger.ONE);
+    private static final FixedPointCombMultiplier MULTIPLIER = new FixedPointCombMultiplier();
+
+    static {
+        // 生成元的预计算表保存在G上，所有线程共享，只需要计算一次
+        FixedPointUtil.precompute(CURVE.getG());
+    }
+
+    private final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+
+    /**
+     * @Author:doubi.liu
+     * @description:生成count个密钥，每个为96字节：公钥X(32) + 公钥Y(32) + 私钥(32)，
+     * KeyPair收到96字节时直接使用其中的公钥，不再做标量乘法
+     * @date:2026/10/18
+     */
+    public byte[][] generate(int count) {
+        SecureRandom secureRandom = random.get();
+        BigInteger[] privateKeys = new BigInteger[count];
+        for (int i = 0; i < count; i++)
+            privateKeys[i] = BigIntegers.createRandomInRange(BigInteger.ONE, N_MINUS_ONE, secureRandom);
+        return derive(privateKeys);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:由已有的私钥批量计算公钥，返回格式与generate相同
+     * @param privateKeys 32字节私钥
+     * @date:2026/10/18
+     */
+    public static byte[][] derive(byte[][] privateKeys) {
+        BigInteger[] keys = new BigInteger[privateKeys.length];
+        for (int i = 0; i < keys.length; i++) keys[i] = new BigInteger(1, privateKeys[i]);
+        return derive(keys);
+    }
+
+    private static byte[][] derive(BigInteger[] privateKeys) {
+        int count = privateKeys.length;
+        ECPoint[] points = new ECPoint[count];
+        for (int i = 0; i < count; i++)
+            points[i] = MULTIPLIER.multiply(CURVE.getG(), privateKeys[i]);
+        // 批量归一化：整批点共用一次模逆
+        CURVE.getCurve().normalizeAll(points);
+        byte[][] keys = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[96];
+            System.arraycopy(BigIntegers.asUnsignedByteArray(32, points[i].getAffineXCoord()
+                    .toBigInteger()), 0, key, 0, 32);
+            System.arraycopy(BigIntegers.asUnsignedByteArray(32, points[i].getAffineYCoord()
+                    .toBigInteger()), 0, key, 32, 32);
+            System.arraycopy(BigIntegers.asUnsignedByteArray(32, privateKeys[i]), 0, key, 64, 32);
+            keys[i] = key;
+        }
+        return keys;
+    }
+
+    @Override
+    public List<WalletAccount> create(Wallet wallet, int count) {
+        List<WalletAccount> accounts = new ArrayList<>(count);
+        for (byte[] key : generate(count)) {
+            accounts.add(wallet.createAccount(key));
+            Arrays.fill(key, (byte) 0);
+        }
+        return accounts;
+    }
+}
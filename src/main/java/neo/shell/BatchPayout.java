@@ -0,0 +1,498 @@
+package neo.shell;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import neo.Fixed8;
+import neo.UInt160;
+import neo.UInt256;
+import neo.UIntBase;
+import neo.ledger.Blockchain;
+import neo.ledger.RelayResultReason;
+import neo.ledger.TransactionState;
+import neo.network.p2p.payloads.CoinReference;
+import neo.network.p2p.payloads.Transaction;
+import neo.network.p2p.payloads.TransactionOutput;
+import neo.network.p2p.payloads.Witness;
+import neo.persistence.Snapshot;
+import neo.smartcontract.ContractParametersContext;
+import neo.wallets.AssetDescriptor;
+import neo.wallets.Coin;
+import neo.wallets.Helper;
+import neo.wallets.TransferOutput;
+import neo.wallets.Wallet;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: BatchPayout
+ * @Package neo.shell
+ * @Description: 按CSV文件批量转账：逐行读取，多个收款人打包进一笔交易。选币使用本地的未花费集合，进行中交易占用的币
+ * 不会被再次选用；签名在线程池上并行，同时relay的交易数不超过提交服务的上限，relay成功后才应用到钱包，结果逐行写入结果文件
+ * @date Created in 10:20 2026/10/18
+ */
+public class BatchPayout {
+
+    /**
+     * 单笔交易的处理结果回调，在签名或relay线程上调用
+     */
+    public interface Listener {
+        /**
+         * @param tx        交易
+         * @param rows      交易包含的行数
+         * @param succeeded relay是否成功
+         * @param result    写入结果文件的结果
+         */
+        void onTransaction(Transaction tx, int rows, boolean succeeded, String result);
+    }
+
+    /**
+     * 处理结果统计
+     */
+    public static class Summary {
+        public final int rows;
+        public final int failedRows;
+        public final int transactions;
+        public final int succeededTransactions;
+
+        Summary(int rows, int failedRows, int transactions, int succeededTransactions) {
+            this.rows = rows;
+            this.failedRows = failedRows;
+            this.transactions = transactions;
+            this.succeededTransactions = succeededTransactions;
+        }
+    }
+
+    /**
+     * CSV中的一行：address,asset,amount
+     */
+    private static class Row {
+        final long line;
+        final String address;
+        final String asset;
+        final String amount;
+        TransferOutput output;
+        /**
+         * 全局资产的输出，NEP-5资产为null
+         */
+        TransactionOutput txOutput;
+
+        Row(long line, String address, String asset, String amount) {
+            this.line = line;
+            this.address = address;
+            this.asset = asset;
+            this.amount = amount;
+        }
+    }
+
+    private static final String HEADER = "address,asset,amount";
+    /**
+     * 等待找零确认的最长时间，超过后不再等待之前的交易
+     */
+    private static final long CONFIRM_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    private static final long CONFIRM_POLL_MILLIS = 1000;
+
+    private final Wallet wallet;
+    private final TransactionSubmitter submitter;
+    private final int maxOutputs;
+    private final int maxTransactionSize;
+    private final int parallelism;
+
+    private final Map<UIntBase, AssetDescriptor> descriptors = new HashMap<>();
+    private final AtomicInteger failedRows = new AtomicInteger();
+    private final AtomicInteger transactions = new AtomicInteger();
+    private final AtomicInteger succeeded = new AtomicInteger();
+
+    // 以下字段由读取线程和relay线程共同访问，需要持有this的锁
+    /**
+     * 本地的未花费币，包括进行中交易占用的币，用于退回和估算见证人大小
+     */
+    private final Map<CoinReference, TransactionOutput> unspent = new HashMap<>();
+    /**
+     * 可以选用的币，不包括进行中交易占用的币
+     */
+    private final Map<UInt256, UtxoIndex.AssetCoins> available = new HashMap<>();
+    /**
+     * 本次已应用到钱包但钱包还没有确认的交易，它们的找零确认前不能被选用
+     */
+    private final Set<UInt256> unconfirmed = new HashSet<>();
+    private Writer results;
+    private IOException writeError;
+
+    private int window;
+    private Semaphore inFlight;
+    private ExecutorService workers;
+
+    /**
+     * @param wallet             钱包
+     * @param submitter          relay使用的提交服务，同时进行的交易数不超过它的上限
+     * @param maxOutputs         单笔交易的收款人数上限
+     * @param maxTransactionSize 单笔交易的大小上限
+     * @param parallelism        签名线程数
+     */
+    public BatchPayout(Wallet wallet, TransactionSubmitter submitter, int maxOutputs, int maxTransactionSize,
+                       int parallelism) {
+        this.wallet = wallet;
+        this.submitter = submitter;
+        this.maxOutputs = maxOutputs;
+        this.maxTransactionSize = maxTransactionSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:流式处理CSV，内存中只保留进行中交易对应的行，阻塞直到全部行都有结果。结果按完成顺序写入
+     * @param reader CSV，每行address,asset,amount，空行、#开头的行和表头会被跳过
+     * @param results 结果文件，每行line,address,asset,amount,txid,result
+     * @param fee 每笔交易的手续费
+     * @param listener 单笔交易的结果回调，可以为null
+     * @date:2026/10/18
+     */
+    public Summary run(BufferedReader reader, Writer results, Fixed8 fee, Listener listener) throws
+            IOException {
+        this.results = results;
+        results.write("line," + HEADER + ",txid,result\n");
+        loadCoins();
+        window = Math.max(1, submitter.getMaxInFlight());
+        inFlight = new Semaphore(window);
+        workers = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        int rows = 0;
+        try {
+            List<Row> chunk = new ArrayList<>(maxOutputs);
+            String text;
+            long line = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                text = text.trim();
+                if (text.isEmpty() || text.startsWith("#") || text.equalsIgnoreCase(HEADER)) continue;
+                rows++;
+                Row row = parse(line, text);
+                if (row == null) continue;
+                chunk.add(row);
+                if (chunk.size() >= maxOutputs) {
+                    process(chunk, fee, listener);
+                    chunk = new ArrayList<>(maxOutputs);
+                }
+            }
+            if (!chunk.isEmpty()) process(chunk, fee, listener);
+            drain();
+        } finally {
+            workers.shutdown();
+            synchronized (this) {
+                results.flush();
+            }
+        }
+        if (writeError != null) throw writeError;
+        return new Summary(rows, failedRows.get(), transactions.get(), succeeded.get());
+    }
+
+    private Row parse(long line, String text) throws IOException {
+        String[] fields = text.split(",", -1);
+        if (fields.length != 3) {
+            Row row = new Row(line, text.replace(',', ' '), "", "");
+            fail(row, "Incorrect Format");
+            return null;
+        }
+        Row row = new Row(line, fields[0].trim(), fields[1].trim(), fields[2].trim());
+        try {
+            UIntBase assetId = Coins.parseAssetId(row.asset);
+            AssetDescriptor descriptor = descriptors.computeIfAbsent(assetId, AssetDescriptor::new);
+            BigDecimal amount = new BigDecimal(row.amount);
+            amount.setScale(descriptor.decimals);
+            if (amount.signum() <= 0) throw new ArithmeticException();
+            UInt160 scriptHash = Helper.toScriptHash(row.address);
+            row.output = new TransferOutput(assetId, amount, scriptHash);
+            if (assetId instanceof UInt256) {
+                row.txOutput = new TransactionOutput();
+                row.txOutput.assetId = (UInt256) assetId;
+                row.txOutput.value = Fixed8.fromDecimal(amount);
+                row.txOutput.scriptHash = scriptHash;
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            fail(row, "Incorrect Amount Format");
+            return null;
+        } catch (Exception e) {
+            fail(row, e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+            return null;
+        }
+        return row;
+    }
+
+    /**
+     * 从钱包读取已确认的未花费币，只在没有进行中的交易时调用
+     */
+    private synchronized void loadCoins() {
+        unspent.clear();
+        available.clear();
+        for (Coin coin : wallet.findUnspentCoins()) {
+            unspent.put(coin.reference, coin.output);
+            available.computeIfAbsent(coin.output.assetId, p -> new UtxoIndex.AssetCoins()).add(coin
+                    .reference, coin.output.value.getData());
+        }
+    }
+
+    /**
+     * 在读取线程上构造交易并占用它的输入，签名和relay交给线程池，进行中的交易数达到上限时阻塞
+     */
+    private void process(List<Row> chunk, Fixed8 fee, Listener listener) throws IOException {
+        Deque<List<Row>> queue = new ArrayDeque<>();
+        queue.push(chunk);
+        while (!queue.isEmpty()) {
+            List<Row> rows = queue.pop();
+            Transaction tx = makeTransaction(rows, fee);
+            // 余额可能被进行中的交易占用，或在之前交易的找零里，等它们结束或确认后再试
+            while (tx == null && awaitConfirmation()) tx = makeTransaction(rows, fee);
+            if (tx == null) {
+                for (Row row : rows) fail(row, "Insufficient funds");
+                continue;
+            }
+            if (rows.size() > 1 && estimateSize(tx) > maxTransactionSize) {
+                release(tx);
+                // 后半部分先入栈，保证前半部分先处理
+                queue.push(new ArrayList<>(rows.subList(rows.size() / 2, rows.size())));
+                queue.push(new ArrayList<>(rows.subList(0, rows.size() / 2)));
+                continue;
+            }
+            submit(tx, rows, listener);
+        }
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:全局资产从本地可用的币中选币；含NEP-5资产时等进行中的交易结束，再由钱包构造。构造成功时占用输入
+     * @return 余额不足时返回null
+     * @date:2026/10/18
+     */
+    private Transaction makeTransaction(List<Row> rows, Fixed8 fee) {
+        List<TransactionOutput> txOutputs = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (row.txOutput == null) {
+                txOutputs = null;
+                break;
+            }
+            txOutputs.add(row.txOutput);
+        }
+        Transaction tx;
+        if (txOutputs != null) {
+            synchronized (this) {
+                for (UtxoIndex.AssetCoins coins : available.values()) coins.flush();
+                tx = UtxoIndex.makeTransaction(available, txOutputs, wallet.getChangeAddress(), fee);
+                if (tx != null) reserve(tx);
+            }
+            return tx;
+        }
+        drain();
+        List<TransferOutput> outputs = new ArrayList<>(rows.size());
+        for (Row row : rows) outputs.add(row.output);
+        try {
+            tx = wallet.makeTransaction(null, outputs, null, null, fee);
+        } catch (Exception e) {
+            return null;
+        }
+        if (tx != null) {
+            synchronized (this) {
+                reserve(tx);
+            }
+        }
+        return tx;
+    }
+
+    private void reserve(Transaction tx) {
+        for (CoinReference input : tx.inputs) {
+            TransactionOutput output = unspent.get(input);
+            if (output != null) available.get(output.assetId).remove(input, output.value.getData());
+        }
+    }
+
+    /**
+     * 交易没有发出，输入退回可用的币
+     */
+    private synchronized void release(Transaction tx) {
+        for (CoinReference input : tx.inputs) {
+            TransactionOutput output = unspent.get(input);
+            if (output != null) available.get(output.assetId).add(input, output.value.getData());
+        }
+    }
+
+    private void submit(Transaction tx, List<Row> rows, Listener listener) {
+        transactions.incrementAndGet();
+        inFlight.acquireUninterruptibly();
+        CompletableFuture
+                .supplyAsync(() -> sign(tx), workers)
+                .thenCompose(signed -> signed ? submitter.relay(tx) : CompletableFuture
+                        .completedFuture((RelayResultReason) null))
+                .handle((reason, e) -> {
+                    try {
+                        onRelayed(tx, rows, reason, e, listener);
+                    } finally {
+                        inFlight.release();
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * 签名不完整或relay被拒绝时钱包不受影响，输入退回；relay超时时交易可能已进入内存池，仍然应用到钱包，避免再次支付同样的行
+     */
+    private void onRelayed(Transaction tx, List<Row> rows, RelayResultReason reason, Throwable e, Listener
+            listener) {
+        if (e != null) {
+            if (TransactionSubmitter.isTimeout(e)) {
+                applyTransaction(tx);
+                complete(tx, rows, false, "Timeout (check txid before retrying)", listener);
+            } else {
+                release(tx);
+                complete(tx, rows, false, "Relay Failed", listener);
+            }
+        } else if (reason == null) {
+            release(tx);
+            complete(tx, rows, false, "Incomplete Signature", listener);
+        } else if (reason == RelayResultReason.Succeed) {
+            applyTransaction(tx);
+            complete(tx, rows, true, reason.toString(), listener);
+        } else {
+            release(tx);
+            complete(tx, rows, false, reason.toString(), listener);
+        }
+    }
+
+    private void applyTransaction(Transaction tx) {
+        submitter.apply(wallet, tx);
+        synchronized (this) {
+            unconfirmed.add(tx.hash());
+            for (CoinReference input : tx.inputs) unspent.remove(input);
+        }
+    }
+
+    /**
+     * 等待全部进行中的交易结束
+     */
+    private void drain() {
+        inFlight.acquireUninterruptibly(window);
+        inFlight.release(window);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:有进行中的交易时等它们结束，失败的交易会退回币；否则等到本次至少一笔交易被钱包确认，
+     * 重新读取钱包中的币，找零才能被选用
+     * @return 需要重试时返回true，没有待确认的交易或等待超时时返回false
+     * @date:2026/10/18
+     */
+    private boolean awaitConfirmation() {
+        if (inFlight.availablePermits() < window) {
+            drain();
+            return true;
+        }
+        long deadline = System.currentTimeMillis() + CONFIRM_TIMEOUT_MILLIS;
+        while (true) {
+            synchronized (this) {
+                if (unconfirmed.isEmpty()) return false;
+            }
+            long walletHeight = wallet.getWalletHeight().longValue();
+            Snapshot snapshot = Blockchain.singleton().getSnapshot();
+            boolean confirmed;
+            try {
+                synchronized (this) {
+                    confirmed = unconfirmed.removeIf(hash -> {
+                        TransactionState state = snapshot.getTransactions().tryGet(hash);
+                        return state != null && state.blockIndex.longValue() < walletHeight;
+                    });
+                }
+            } finally {
+                snapshot.dispose();
+            }
+            if (confirmed) {
+                loadCoins();
+                return true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                // 这些交易可能已被内存池丢弃，不再等待
+                synchronized (this) {
+                    unconfirmed.clear();
+                }
+                return false;
+            }
+            try {
+                Thread.sleep(CONFIRM_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 只签名，不应用到钱包
+     */
+    private boolean sign(Transaction tx) {
+        try {
+            ContractParametersContext context = new ContractParametersContext(tx);
+            wallet.sign(context);
+            if (!context.completed()) return false;
+            context.verifiable.setWitnesses(context.getWitnesses());
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private int estimateSize(Transaction tx) {
+        tx.witnesses = new Witness[0];
+        // 去掉witnesses空数组的长度前缀
+        int size = tx.size() - 1;
+        tx.witnesses = null;
+        Set<UInt160> signers = new HashSet<>();
+        synchronized (this) {
+            for (CoinReference input : tx.inputs) {
+                TransactionOutput output = unspent.get(input);
+                if (output != null) signers.add(output.scriptHash);
+            }
+        }
+        if (signers.isEmpty()) signers.add(wallet.getChangeAddress());
+        size += TransactionSizes.varIntSize(signers.size());
+        for (UInt160 signer : signers) size += TransactionSizes.witnessSize(wallet, signer);
+        return size;
+    }
+
+    /**
+     * 在relay线程上调用，写结果文件失败时记录下来，由run抛出
+     */
+    private void complete(Transaction tx, List<Row> rows, boolean success, String result, Listener listener) {
+        if (success) succeeded.incrementAndGet();
+        else failedRows.addAndGet(rows.size());
+        try {
+            for (Row row : rows) write(row, tx.hash().toString(), result);
+        } catch (IOException e) {
+            synchronized (this) {
+                if (writeError == null) writeError = e;
+            }
+        }
+        if (listener != null) listener.onTransaction(tx, rows.size(), success, result);
+    }
+
+    private void fail(Row row, String reason) throws IOException {
+        failedRows.incrementAndGet();
+        write(row, "", reason);
+    }
+
+    private synchronized void write(Row row, String txid, String result) throws IOException {
+        results.write(String.format("%d,%s,%s,%s,%s,%s\n", row.line, row.address, row.asset, row
+                .amount, txid, result.replace(',', ' ')));
+    }
+}
@@ -0,0 +1,488 @@
+package neo.shell;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import neo.Fixed8;
+import neo.UInt160;
+import neo.csharp.Uint;
+import neo.csharp.Ushort;
+import neo.ledger.Blockchain;
+import neo.log.notr.TR;
+import neo.network.p2p.payloads.Block;
+import neo.network.p2p.payloads.ClaimTransaction;
+import neo.network.p2p.payloads.CoinReference;
+import neo.network.p2p.payloads.Transaction;
+import neo.network.p2p.payloads.TransactionOutput;
+import neo.persistence.Snapshot;
+import neo.wallets.Coin;
+import neo.wallets.Wallet;
+import neo.wallets.WalletAccount;
+import neo.wallets.WalletTransactionEventArgs;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: BonusTracker
+ * @Package neo.shell
+ * @Description: 按账户维护可提取/不可提取GAS的累计值，区块持久化后按每个NEO的GAS增量更新，钱包交易事件只更新涉及的币
+ * @date Created in 14:30 2026/10/18
+ */
+public class BonusTracker {
+
+    /**
+     * Fixed8原始值中1个NEO的大小，NEO不可分割
+     */
+    private static final long NEO_UNIT = 100000000L;
+
+    /**
+     * 单个账户的GAS统计
+     */
+    public static class AccountBonus {
+        public final Fixed8 available;
+        public final Fixed8 unavailable;
+
+        AccountBonus(Fixed8 available, Fixed8 unavailable) {
+            this.available = available;
+            this.unavailable = unavailable;
+        }
+    }
+
+    /**
+     * 某一高度下的统计结果，发布后不再修改
+     */
+    private static class State {
+        final Uint height;
+        final Fixed8 available;
+        final Fixed8 unavailable;
+        final Map<UInt160, AccountBonus> accounts;
+        /**
+         * 计算失败的账户和原因，这些账户的GAS没有计入统计
+         */
+        final Map<UInt160, String> errors;
+
+        State(Uint height, Fixed8 available, Fixed8 unavailable, Map<UInt160, AccountBonus> accounts,
+              Map<UInt160, String> errors) {
+            this.height = height;
+            this.available = available;
+            this.unavailable = unavailable;
+            this.accounts = accounts;
+            this.errors = errors;
+        }
+    }
+
+    /**
+     * 账户的累计值，available和unavailable为Fixed8原始值
+     */
+    private static class Totals {
+        long neo;
+        long available;
+        long unavailable;
+    }
+
+    /**
+     * 未花费的NEO
+     */
+    private static class NeoCoin {
+        final UInt160 account;
+        final long neo;
+
+        NeoCoin(UInt160 account, long neo) {
+            this.account = account;
+            this.neo = neo;
+        }
+    }
+
+    /**
+     * 已花费未提取的NEO，bonus在花费时已确定
+     */
+    private static class Unclaimed {
+        final UInt160 account;
+        final long bonus;
+
+        Unclaimed(UInt160 account, long bonus) {
+            this.account = account;
+            this.bonus = bonus;
+        }
+    }
+
+    private final WalletObserver walletObserver;
+    private final Wallet wallet;
+    private final PersistObserver observer;
+    private final Queue<WalletTransactionEventArgs> events = new ConcurrentLinkedQueue<>();
+    private final Consumer<WalletTransactionEventArgs> walletListener = e -> {
+        events.add(e);
+        schedule();
+    };
+    private final Consumer<Block> listener = p -> schedule();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "bonus-tracker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private volatile State state;
+
+    // 以下字段只在executor线程上访问
+    private boolean reload = true;
+    /**
+     * 不可提取GAS已累计到的结束高度（不含）
+     */
+    private Uint end;
+    /**
+     * 用来计算每个NEO的区块增量的币，花费后仍可使用
+     */
+    private CoinReference probe;
+    private long probeNeo;
+    private Set<UInt160> accounts = Collections.emptySet();
+    private final Map<UInt160, Totals> totals = new HashMap<>();
+    private final Map<CoinReference, NeoCoin> neoCoins = new HashMap<>();
+    /**
+     * 本地交易已花费、尚未上链的NEO，上链后才能确定可提取的GAS
+     */
+    private final Map<CoinReference, UInt160> pendingSpent = new HashMap<>();
+    private final Map<CoinReference, Unclaimed> unclaimed = new HashMap<>();
+    private final Map<UInt160, String> errors = new HashMap<>();
+
+    public BonusTracker(WalletObserver walletObserver, PersistObserver observer) {
+        this.walletObserver = walletObserver;
+        this.wallet = walletObserver.getWallet();
+        this.observer = observer;
+        walletObserver.addListener(walletListener);
+        observer.addListener(listener);
+        schedule();
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    public void dispose() {
+        walletObserver.removeListener(walletListener);
+        observer.removeListener(listener);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:钱包中的币因本地交易发生了变化，尽快刷新。变化本身通过钱包交易事件获得
+     * @date:2026/10/18
+     */
+    public void invalidate() {
+        schedule();
+    }
+
+    public Fixed8 getAvailable() {
+        return current().available;
+    }
+
+    public Fixed8 getUnavailable() {
+        return current().unavailable;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:统计结果对应的区块高度
+     * @date:2026/10/18
+     */
+    public Uint getHeight() {
+        return current().height;
+    }
+
+    public AccountBonus getAccount(UInt160 scriptHash) {
+        AccountBonus bonus = current().accounts.get(scriptHash);
+        return bonus != null ? bonus : new AccountBonus(Fixed8.ZERO, Fixed8.ZERO);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:统计是否完整，有账户计算失败时返回失败的账户数和第一个原因，否则返回null
+     * @date:2026/10/18
+     */
+    public String getError() {
+        Map<UInt160, String> errors = current().errors;
+        if (errors.isEmpty()) return null;
+        Map.Entry<UInt160, String> first = errors.entrySet().iterator().next();
+        return String.format("bonus calculation failed for %d account(s), %s: %s", errors.size(), first
+                .getKey(), first.getValue());
+    }
+
+    /**
+     * @return 该账户计算失败的原因，成功时返回null
+     */
+    public String getError(UInt160 scriptHash) {
+        return current().errors.get(scriptHash);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:用全量计算结果校验当前统计，两者必须基于同一高度，统计不完整时校验不通过
+     * @return 校验通过返回true
+     * @date:2026/10/18
+     */
+    public boolean verify(Fixed8 available, Fixed8 unavailable) {
+        State current = current();
+        return current.errors.isEmpty() && current.available.equals(available) && current.unavailable
+                .equals(unavailable);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:在executor线程上立即刷新并等待完成
+     * @date:2026/10/18
+     */
+    public void refreshNow() {
+        try {
+            executor.submit(this::refresh).get();
+        } catch (Exception e) {
+            TR.warn(e);
+        }
+    }
+
+    private State current() {
+        State current = state;
+        if (current == null) {
+            refreshNow();
+            current = state;
+        } else if (!events.isEmpty() || !current.height.equals(Blockchain.singleton().height())) {
+            schedule();
+        }
+        return current;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                scheduled.set(false);
+                refresh();
+            });
+        }
+    }
+
+    private void refresh() {
+        Snapshot snapshot = Blockchain.singleton().getSnapshot();
+        try {
+            Uint height = snapshot.getHeight();
+            State previous = state;
+            if (!reload && errors.isEmpty() && events.isEmpty() && previous != null && previous.height
+                    .equals(height)) {
+                return;
+            }
+            Uint next = height.add(Uint.ONE);
+            // 计算失败的账户没有计入统计，重新加载后再试
+            if (!errors.isEmpty()) reload = true;
+            if (reload) {
+                reload(snapshot, next);
+            } else if (!next.equals(end)) {
+                advance(snapshot, next);
+            }
+            applyEvents(snapshot);
+            if (reload) {
+                reload(snapshot, next);
+                applyEvents(snapshot);
+            }
+            publish(height);
+        } catch (Exception e) {
+            // 累计值可能只更新了一部分，下次刷新时重新加载
+            TR.warn(e);
+            reload = true;
+        } finally {
+            snapshot.dispose();
+        }
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:把不可提取GAS累计到新的结束高度。未花费NEO的bonus等于NEO数量乘以每个NEO在各区块分得的GAS之和，
+     * 没有舍入，所以同一区间内每个NEO的增量对所有币相同，只需用一个币计算一次，再按账户的NEO数量累加
+     * @date:2026/10/18
+     */
+    private void advance(Snapshot snapshot, Uint next) {
+        if (probe != null) {
+            long delta = bonus(snapshot, probe, next) - bonus(snapshot, probe, end);
+            long perNeo = delta / probeNeo;
+            for (Totals accountTotals : totals.values()) accountTotals.unavailable += accountTotals.neo * perNeo;
+        }
+        end = next;
+    }
+
+    /**
+     * 按顺序应用排队的钱包交易事件。事件对应的区块还不在快照中时留到下次刷新
+     */
+    private void applyEvents(Snapshot snapshot) {
+        for (WalletTransactionEventArgs e; !reload && (e = events.peek()) != null; ) {
+            if (e.height != null && e.height.longValue() >= end.longValue()) {
+                schedule();
+                return;
+            }
+            events.poll();
+            onWalletTransaction(snapshot, e);
+        }
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:钱包交易事件：花费的NEO从不可提取转为可提取，提取交易移除已提取的币，上链的交易把转给钱包的NEO
+     * 加入统计。同一交易未上链和上链时各有一次事件，两次处理的结果相同。出现未知账户时重新加载
+     * @date:2026/10/18
+     */
+    private void onWalletTransaction(Snapshot snapshot, WalletTransactionEventArgs e) {
+        for (UInt160 account : e.relatedAccounts) {
+            if (!accounts.contains(account)) {
+                reload = true;
+                return;
+            }
+        }
+        Transaction tx = e.transaction;
+        for (CoinReference input : tx.inputs) spend(snapshot, input, e.height);
+        if (tx instanceof ClaimTransaction) {
+            for (CoinReference claim : ((ClaimTransaction) tx).claims) {
+                Unclaimed coin = unclaimed.remove(claim);
+                if (coin != null) totals(coin.account).available -= coin.bonus;
+            }
+        }
+        if (e.height == null) return;
+        for (int i = 0; i < tx.outputs.length; i++) {
+            TransactionOutput output = tx.outputs[i];
+            if (!accounts.contains(output.scriptHash)
+                    || !output.assetId.equals(Blockchain.GoverningToken.hash())) continue;
+            CoinReference reference = new CoinReference();
+            reference.prevHash = tx.hash();
+            reference.prevIndex = new Ushort(i);
+            if (neoCoins.containsKey(reference)) continue;
+            addNeo(reference, output.scriptHash, output.value.getData() / NEO_UNIT, bonus(snapshot, reference, end));
+        }
+    }
+
+    private void spend(Snapshot snapshot, CoinReference input, Uint height) {
+        UInt160 account;
+        NeoCoin coin = neoCoins.remove(input);
+        if (coin != null) {
+            Totals accountTotals = totals(coin.account);
+            accountTotals.neo -= coin.neo;
+            accountTotals.unavailable -= bonus(snapshot, input, end);
+            if (height == null) {
+                pendingSpent.put(input, coin.account);
+                return;
+            }
+            account = coin.account;
+        } else {
+            if (height == null) return;
+            account = pendingSpent.remove(input);
+            if (account == null) return;
+        }
+        // 花费后的bonus计算到花费高度，与snapshot.calculateBonus对已花费币的结果相同
+        long bonus = bonus(snapshot, input, height);
+        unclaimed.put(input, new Unclaimed(account, bonus));
+        totals(account).available += bonus;
+    }
+
+    private void addNeo(CoinReference reference, UInt160 account, long neo, long bonus) {
+        neoCoins.put(reference, new NeoCoin(account, neo));
+        Totals accountTotals = totals(account);
+        accountTotals.neo += neo;
+        accountTotals.unavailable += bonus;
+        if (probe == null && neo > 0) {
+            probe = reference;
+            probeNeo = neo;
+        }
+    }
+
+    private Totals totals(UInt160 account) {
+        return totals.computeIfAbsent(account, p -> new Totals());
+    }
+
+    private static long bonus(Snapshot snapshot, CoinReference reference, Uint end) {
+        return snapshot.calculateBonus(Collections.singletonList(reference), end).getData();
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:从钱包重新读取全部币并全量计算，只在第一次、出现未知账户或计算失败后执行
+     * @date:2026/10/18
+     */
+    private void reload(Snapshot snapshot, Uint next) {
+        // 之前的事件已包含在读到的币中，读币期间的事件重新应用一次，结果不变
+        events.clear();
+        totals.clear();
+        neoCoins.clear();
+        pendingSpent.clear();
+        unclaimed.clear();
+        errors.clear();
+        probe = null;
+        end = next;
+        Set<UInt160> scriptHashes = new HashSet<>();
+        for (WalletAccount account : wallet.getAccounts()) scriptHashes.add(account.scriptHash);
+        accounts = scriptHashes;
+
+        Map<UInt160, List<Coin>> neo = new HashMap<>();
+        for (Coin coin : wallet.findUnspentCoins()) {
+            if (coin.output.assetId.equals(Blockchain.GoverningToken.hash())) {
+                neo.computeIfAbsent(coin.output.scriptHash, p -> new ArrayList<>()).add(coin);
+            }
+        }
+        for (Map.Entry<UInt160, List<Coin>> entry : neo.entrySet()) {
+            List<CoinReference> references = new ArrayList<>(entry.getValue().size());
+            for (Coin coin : entry.getValue()) references.add(coin.reference);
+            long value;
+            try {
+                value = Coins.calculateBonus(snapshot, references, next).getData();
+            } catch (Exception e) {
+                // 不能当作0计入统计，否则校验时会报告错误的不一致
+                TR.warn(e);
+                errors.put(entry.getKey(), message(e));
+                continue;
+            }
+            for (Coin coin : entry.getValue())
+                addNeo(coin.reference, entry.getKey(), coin.output.value.getData() / NEO_UNIT, 0);
+            totals(entry.getKey()).unavailable += value;
+        }
+        // 提取交易按币移除，所以逐个记录可提取的GAS
+        for (Coin coin : wallet.getUnclaimedCoins()) {
+            UInt160 account = coin.output.scriptHash;
+            if (errors.containsKey(account)) continue;
+            long bonus;
+            try {
+                bonus = snapshot.calculateBonus(Collections.singletonList(coin.reference)).getData();
+            } catch (Exception e) {
+                TR.warn(e);
+                errors.put(account, message(e));
+                continue;
+            }
+            unclaimed.put(coin.reference, new Unclaimed(account, bonus));
+            totals(account).available += bonus;
+        }
+        reload = false;
+    }
+
+    private static String message(Exception e) {
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    }
+
+    private void publish(Uint height) {
+        Map<UInt160, AccountBonus> result = new HashMap<>();
+        long available = 0;
+        long unavailable = 0;
+        for (Map.Entry<UInt160, Totals> entry : totals.entrySet()) {
+            if (errors.containsKey(entry.getKey())) continue;
+            Totals accountTotals = entry.getValue();
+            available += accountTotals.available;
+            unavailable += accountTotals.unavailable;
+            result.put(entry.getKey(), new AccountBonus(new Fixed8(accountTotals.available), new Fixed8
+                    (accountTotals.unavailable)));
+        }
+        state = new State(height, new Fixed8(available), new Fixed8(unavailable), result, new HashMap<>(errors));
+    }
+}
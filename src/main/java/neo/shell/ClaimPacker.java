@@ -0,0 +1,193 @@
+package neo.shell;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import neo.Fixed8;
+import neo.UInt160;
+import neo.UInt256;
+import neo.ledger.Blockchain;
+import neo.network.p2p.payloads.ClaimTransaction;
+import neo.network.p2p.payloads.CoinReference;
+import neo.network.p2p.payloads.TransactionAttribute;
+import neo.network.p2p.payloads.TransactionOutput;
+import neo.network.p2p.payloads.Witness;
+import neo.persistence.Snapshot;
+import neo.wallets.Coin;
+import neo.wallets.Wallet;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: ClaimPacker
+ * @Package neo.shell
+ * @Description: 按GAS价值排序并按交易大小切分claim批次
+ * @date Created in 09:40 2026/10/18
+ */
+public class ClaimPacker {
+
+    /**
+     * 一个claim批次，对应一笔ClaimTransaction
+     */
+    public static class Batch {
+        public final CoinReference[] claims;
+        public final Fixed8 value;
+        public final int size;
+
+        Batch(CoinReference[] claims, Fixed8 value, int size) {
+            this.claims = claims;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 同一笔交易中属于同一账户的输出，作为打包的最小单位，bonus只需计算一次
+     */
+    private static class Group {
+        final UInt160 scriptHash;
+        final List<CoinReference> references = new ArrayList<>();
+        Fixed8 value = Fixed8.ZERO;
+
+        Group(UInt160 scriptHash) {
+            this.scriptHash = scriptHash;
+        }
+    }
+
+    private final Wallet wallet;
+    private final int maxTransactionSize;
+
+    public ClaimPacker(Wallet wallet, int maxTransactionSize) {
+        this.wallet = wallet;
+        this.maxTransactionSize = maxTransactionSize;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:把未提取的币按每个claim的GAS价值从高到低排序，依次填入交易，直到交易大小达到上限
+     * @param snapshot 计算bonus使用的快照
+     * @param unclaimed 未提取的币
+     * @return 批次列表，GAS价值高的批次在前
+     * @date:2026/10/18
+     */
+    public List<Batch> pack(Snapshot snapshot, Iterable<Coin> unclaimed) {
+        Map<UInt256, Map<UInt160, Group>> byHash = new HashMap<>();
+        for (Coin coin : unclaimed) {
+            byHash.computeIfAbsent(coin.reference.prevHash, p -> new HashMap<>())
+                    .computeIfAbsent(coin.output.scriptHash, Group::new)
+                    .references.add(coin.reference);
+        }
+        Group[] groups = byHash.values().stream().flatMap(p -> p.values().stream())
+                .toArray(Group[]::new);
+        // snapshot不保证线程安全，逐组计算
+        for (Group group : groups) group.value = snapshot.calculateBonus(group.references);
+        Arrays.sort(groups, (x, y) -> compareValuePerClaim(y.value.getData(), y.references.size(), x.value
+                .getData(), x.references.size()));
+
+        Packing packing = new Packing(snapshot, baseSize());
+        Map<UInt160, Integer> witnessSizes = new HashMap<>();
+        for (Group group : groups) {
+            int witness = witnessSizes.computeIfAbsent(group.scriptHash, p -> TransactionSizes
+                    .witnessSize(wallet, p));
+            if (!packing.fits(group.references.size(), group.scriptHash, witness)) packing.close();
+            if (packing.fits(group.references.size(), group.scriptHash, witness)) {
+                packing.add(group.references, group.scriptHash, witness, group.value);
+                continue;
+            }
+            // 单独一组就超过交易大小上限，只能拆开，拆开后的批次需要重新计算bonus
+            for (CoinReference reference : group.references) {
+                if (!packing.fits(1, group.scriptHash, witness)) packing.close();
+                packing.add(Arrays.asList(reference), group.scriptHash, witness, null);
+            }
+        }
+        packing.close();
+        return packing.batches;
+    }
+
+    /**
+     * 正在填充的批次
+     */
+    private class Packing {
+        final Snapshot snapshot;
+        final int baseSize;
+        final List<Batch> batches = new ArrayList<>();
+        final List<CoinReference> claims = new ArrayList<>();
+        final Set<UInt160> signers = new HashSet<>();
+        Fixed8 value = Fixed8.ZERO;
+        int witnessSize = 0;
+
+        Packing(Snapshot snapshot, int baseSize) {
+            this.snapshot = snapshot;
+            this.baseSize = baseSize;
+        }
+
+        boolean fits(int count, UInt160 scriptHash, int witness) {
+            if (claims.isEmpty() && count == 1) return true;
+            if (signers.contains(scriptHash)) {
+                return transactionSize(baseSize, claims.size() + count, signers.size(), witnessSize)
+                        <= maxTransactionSize;
+            }
+            return transactionSize(baseSize, claims.size() + count, signers.size() + 1,
+                    witnessSize + witness) <= maxTransactionSize;
+        }
+
+        /**
+         * @param groupValue 整组加入时的bonus，部分加入时为null
+         */
+        void add(List<CoinReference> references, UInt160 scriptHash, int witness, Fixed8 groupValue) {
+            claims.addAll(references);
+            if (signers.add(scriptHash)) witnessSize += witness;
+            value = value == null || groupValue == null ? null : Fixed8.add(value, groupValue);
+        }
+
+        void close() {
+            if (claims.isEmpty()) return;
+            CoinReference[] array = claims.toArray(new CoinReference[0]);
+            Fixed8 total = value != null ? value : snapshot.calculateBonus(Arrays.asList(array));
+            batches.add(new Batch(array, total, transactionSize(baseSize, array.length, signers.size(),
+                    witnessSize)));
+            claims.clear();
+            signers.clear();
+            value = Fixed8.ZERO;
+            witnessSize = 0;
+        }
+    }
+
+    private int baseSize() {
+        ClaimTransaction tx = new ClaimTransaction();
+        tx.claims = new CoinReference[0];
+        tx.attributes = new TransactionAttribute[0];
+        tx.inputs = new CoinReference[0];
+        TransactionOutput output = new TransactionOutput();
+        output.assetId = Blockchain.UtilityToken.hash();
+        output.value = Fixed8.ZERO;
+        output.scriptHash = wallet.getChangeAddress();
+        tx.outputs = new TransactionOutput[]{output};
+        tx.witnesses = new Witness[0];
+        // 去掉claims和witnesses两个空数组的长度前缀
+        return tx.size() - 2;
+    }
+
+    /**
+     * 比较两组的每个claim价值value1/count1和value2/count2，交叉相乘避免除法和精度损失，溢出时改用BigInteger
+     */
+    static int compareValuePerClaim(long value1, int count1, long value2, int count2) {
+        try {
+            return Long.compare(Math.multiplyExact(value1, count2), Math.multiplyExact(value2, count1));
+        } catch (ArithmeticException e) {
+            return BigInteger.valueOf(value1).multiply(BigInteger.valueOf(count2)).compareTo(BigInteger
+                    .valueOf(value2).multiply(BigInteger.valueOf(count1)));
+        }
+    }
+
+    static int transactionSize(int baseSize, int claims, int signers, int witnessSize) {
+        return baseSize + TransactionSizes.varIntSize(claims) + claims * TransactionSizes
+                .COIN_REFERENCE_SIZE + TransactionSizes.varIntSize(signers) + witnessSize;
+    }
+}
@@ -0,0 +1,128 @@
+package neo.shell;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import neo.UInt160;
+import neo.exception.InvalidOperationException;
+import neo.ledger.Blockchain;
+import neo.ledger.RelayResultReason;
+import neo.network.p2p.payloads.ClaimTransaction;
+import neo.network.p2p.payloads.CoinReference;
+import neo.network.p2p.payloads.TransactionAttribute;
+import neo.network.p2p.payloads.TransactionOutput;
+import neo.wallets.Wallet;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: ClaimPipeline
+ * @Package neo.shell
+ * @Description: 流水线式提取GAS：在线程池上并行签名，通过TransactionSubmitter异步relay
+ * @date Created in 10:12 2026/10/18
+ */
+public class ClaimPipeline {
+
+    /**
+     * 单个批次的处理结果回调，按结果到达的顺序调用（不一定是批次顺序）
+     */
+    public interface BatchListener {
+        /**
+         * @param index  批次序号，从0开始
+         * @param total  批次总数
+         * @param tx     该批次的交易，签名失败时为null
+         * @param reason relay结果，未relay时为null
+         */
+        void onBatch(int index, int total, ClaimTransaction tx, RelayResultReason reason);
+    }
+
+    private final Wallet wallet;
+    private final TransactionSubmitter submitter;
+    private final int parallelism;
+
+    public ClaimPipeline(Wallet wallet, TransactionSubmitter submitter, int parallelism) {
+        this.wallet = wallet;
+        this.submitter = submitter;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:提交全部批次，阻塞直到所有批次都有结果
+     * @param batches ClaimPacker生成的批次列表
+     * @param changeAddress GAS接收地址，为null时使用钱包找零地址
+     * @param listener 批次结果回调，可以为null
+     * @return 成功relay的交易，按批次顺序排列
+     * @date:2026/10/18
+     */
+    public ClaimTransaction[] run(List<ClaimPacker.Batch> batches, UInt160 changeAddress,
+                                  BatchListener listener) {
+        UInt160 scriptHash = changeAddress != null ? changeAddress : wallet.getChangeAddress();
+        int total = batches.size();
+        ClaimTransaction[] results = new ClaimTransaction[total];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[total];
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        try {
+            for (int i = 0; i < total; i++) {
+                final int index = i;
+                final ClaimPacker.Batch batch = batches.get(i);
+                futures[i] = CompletableFuture
+                        .supplyAsync(() -> sign(build(batch, scriptHash)), workers)
+                        .thenCompose(tx -> {
+                            if (tx == null) {
+                                notify(listener, index, total, null, null);
+                                return CompletableFuture.completedFuture(null);
+                            }
+                            return submitter.relay(tx).handle((reason, e) -> {
+                                if (reason == null) reason = RelayResultReason.Unknown;
+                                if (reason == RelayResultReason.Succeed) results[index] = tx;
+                                notify(listener, index, total, tx, reason);
+                                return null;
+                            });
+                        })
+                        .exceptionally(e -> {
+                            notify(listener, index, total, null, null);
+                            return null;
+                        });
+            }
+            CompletableFuture.allOf(futures).join();
+        } finally {
+            workers.shutdown();
+        }
+        return Arrays.stream(results).filter(p -> p != null).toArray(ClaimTransaction[]::new);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:用批次构造未签名的ClaimTransaction
+     * @date:2026/10/18
+     */
+    public static ClaimTransaction build(ClaimPacker.Batch batch, UInt160 scriptHash) {
+        ClaimTransaction tx = new ClaimTransaction();
+        tx.claims = batch.claims;
+        tx.attributes = new TransactionAttribute[0];
+        tx.inputs = new CoinReference[0];
+        TransactionOutput output = new TransactionOutput();
+        output.assetId = Blockchain.UtilityToken.hash();
+        output.value = batch.value;
+        output.scriptHash = scriptHash;
+        tx.outputs = new TransactionOutput[]{output};
+        return tx;
+    }
+
+    private ClaimTransaction sign(ClaimTransaction tx) {
+        try {
+            return submitter.sign(wallet, tx).completed() ? tx : null;
+        } catch (InvalidOperationException e) {
+            return null;
+        }
+    }
+
+    private static void notify(BatchListener listener, int index, int total, ClaimTransaction tx,
+                               RelayResultReason reason) {
+        if (listener != null) listener.onBatch(index, total, tx, reason);
+    }
+}
@@ -1,17 +1,15 @@
 package neo.shell;
 
-import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
-import akka.pattern.Patterns;
-import akka.util.Timeout;
 import neo.Fixed8;
-import neo.NeoSystem;
 import neo.UInt160;
+import neo.UIntBase;
 import neo.csharp.Uint;
 import neo.exception.InvalidOperationException;
 import neo.ledger.Blockchain;
@@ -19,13 +17,9 @@ import neo.ledger.RelayResultReason;
 import neo.network.p2p.payloads.ClaimTransaction;
 import neo.network.p2p.payloads.CoinReference;
 import neo.network.p2p.payloads.Transaction;
-import neo.network.p2p.payloads.TransactionAttribute;
-import neo.network.p2p.payloads.TransactionOutput;
 import neo.persistence.Snapshot;
-import neo.smartcontract.ContractParametersContext;
+import neo.services.ConsoleHelper;
 import neo.wallets.Wallet;
-import scala.concurrent.Await;
-import scala.concurrent.Future;
 
 /**
  * @author doubi.liu
@@ -37,15 +31,78 @@ import scala.concurrent.Future;
  */
 public class Coins {
     private Wallet current_wallet;
-    private NeoSystem system;
-    public static int MAX_CLAIMS_AMOUNT = 50;
-
-    public Coins(Wallet wallet, NeoSystem system) {
+    private TransactionSubmitter submitter;
+    private BonusTracker tracker;
+    public static int MAX_CLAIM_TRANSACTION_SIZE = 102400;
+    private static final int CLAIM_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    public static boolean PARALLEL_BONUS = false;
+    public static int PARALLEL_BONUS_THRESHOLD = 512;
+
+    public Coins(Wallet wallet, TransactionSubmitter submitter) {
         this.current_wallet = wallet;
-        this.system = system;
+        this.submitter = submitter;
+    }
+
+    /**
+      * @Author:doubi.liu
+      * @description:可提取/不可提取GAS优先读取tracker维护的累计值，tracker统计不完整时再全量计算
+      * @date:2026/10/18
+    */
+    public Coins(Wallet wallet, TransactionSubmitter submitter, BonusTracker tracker) {
+        this(wallet, submitter);
+        this.tracker = tracker;
+    }
+
+    /**
+      * @Author:doubi.liu
+      * @description:解析资产，支持neo/ans、gas/anc别名和资产hash
+      * @date:2026/10/18
+    */
+    public static UIntBase parseAssetId(String value) {
+        switch (value.toLowerCase()) {
+            case "neo":
+            case "ans":
+                return Blockchain.GoverningToken.hash();
+            case "gas":
+            case "anc":
+                return Blockchain.UtilityToken.hash();
+            default:
+                return UIntBase.parse(value);
+        }
+    }
+
+    /**
+      * @Author:doubi.liu
+      * @description:计算未花费NEO到指定高度的bonus，按PARALLEL_BONUS选择串行或并行计算
+      * @param snapshot 快照
+      * @param inputs 未花费的NEO
+      * @param height 计算到的高度
+      * @date:2026/10/18
+    */
+    public static Fixed8 calculateBonus(Snapshot snapshot, List<CoinReference> inputs, Uint height) {
+        return calculateBonus(snapshot, inputs, height, PARALLEL_BONUS);
+    }
+
+    public static Fixed8 calculateBonus(Snapshot snapshot, List<CoinReference> inputs, Uint height,
+                                        boolean parallel) {
+        if (parallel && inputs.size() > PARALLEL_BONUS_THRESHOLD) {
+            return new ParallelBonusCalculator(ForkJoinPool.commonPool(), PARALLEL_BONUS_THRESHOLD)
+                    .calculateBonus(snapshot, inputs, height);
+        }
+        return snapshot.calculateBonus(inputs, height);
     }
 
     public Fixed8 unavailableBonus() {
+        if (useTracker()) return tracker.getUnavailable();
+        return unavailableBonus(PARALLEL_BONUS);
+    }
+
+    /**
+      * @Author:doubi.liu
+      * @description:全量计算不可提取的GAS，不经过tracker
+      * @date:2026/10/18
+    */
+    public Fixed8 unavailableBonus(boolean parallel) {
         Snapshot snapshot = Blockchain.singleton().getSnapshot();
         Uint height = snapshot.getHeight().add(Uint.ONE);
         Fixed8 unavailable;
@@ -55,10 +112,10 @@ public class Coins {
 /*            unavailable = snapshot.calculateBonus(current_wallet.findUnspentCoins().Where(p
                     = > p.Output.AssetId.Equals(Blockchain.GoverningToken.hash())).Select(p = > p
                     .Reference),height);*/
-            unavailable = snapshot.calculateBonus(StreamSupport.stream(current_wallet
+            unavailable = calculateBonus(snapshot, StreamSupport.stream(current_wallet
                     .findUnspentCoins().spliterator(),false)
                     .filter(p-> p.output.assetId.equals(Blockchain.GoverningToken.hash()))
-                    .map(p-> p.reference).collect(Collectors.toList()),height);
+                    .map(p-> p.reference).collect(Collectors.toList()),height, parallel);
             //LINQ END
         } catch (Exception e) {
             unavailable = Fixed8.ZERO;
@@ -69,6 +126,7 @@ public class Coins {
 
 
     public Fixed8 availableBonus() {
+        if (useTracker()) return tracker.getAvailable();
         Snapshot snapshot = Blockchain.singleton().getSnapshot();
         //LINQ START
         //return snapshot.calculateBonus(current_wallet.getUnclaimedCoins().Select(p = > p
@@ -78,6 +136,26 @@ public class Coins {
         //LINQ END
     }
 
+    /**
+     * 刷新tracker到当前高度，统计完整时使用tracker的结果
+     */
+    private boolean useTracker() {
+        if (tracker == null || tracker.getWallet() != current_wallet) return false;
+        tracker.refreshNow();
+        return tracker.getError() == null;
+    }
+
+    /**
+      * @Author:doubi.liu
+      * @description:把未提取的币打包成claim批次，不签名，GAS价值高的批次在前
+      * @date:2026/10/18
+    */
+    public List<ClaimPacker.Batch> planClaims() {
+        Snapshot snapshot = Blockchain.singleton().getSnapshot();
+        return new ClaimPacker(current_wallet, MAX_CLAIM_TRANSACTION_SIZE).pack(snapshot,
+                current_wallet.getUnclaimedCoins());
+    }
+
     public ClaimTransaction claim() {
         return claim(null);
     }
@@ -86,37 +164,15 @@ public class Coins {
     public ClaimTransaction claim(UInt160 change_address) {
 
         if (Fixed8.ZERO.equals(this.availableBonus())) {
-            System.out.println("no gas to claim");
+            ConsoleHelper.writeLine("no gas to claim");
             return null;
         }
-        //LINQ START
-/*        CoinReference[] claims = current_wallet.getUnclaimedCoins().Select(p = > p.Reference)
-        .toArray();*/
-        CoinReference[] claims = StreamSupport.stream(current_wallet.getUnclaimedCoins()
-                .spliterator(), false).map(p -> p.reference).toArray(CoinReference[]::new);
-        //LINQ END
-        if (claims.length == 0) return null;
-
-        Snapshot snapshot = Blockchain.singleton().getSnapshot();
-
-            ClaimTransaction tx = new ClaimTransaction();
-            //LINQ START
-            //tx.claims=claims.Take(MAX_CLAIMS_AMOUNT).ToArray();
-            tx.claims= Arrays.asList(claims).stream().limit(MAX_CLAIMS_AMOUNT).toArray(CoinReference[]::new);
-            //LINQ END
-            tx.attributes = new TransactionAttribute[0];
-            tx.inputs = new CoinReference[0];
-            TransactionOutput temp=new TransactionOutput();
-        temp.assetId=Blockchain.UtilityToken.hash();
-        //LINQ START
-        //Value = snapshot.CalculateBonus(claims.Take(MAX_CLAIMS_AMOUNT)
-        temp.value = snapshot.calculateBonus(Arrays.asList(claims).stream().limit
-                (MAX_CLAIMS_AMOUNT).collect(Collectors.toList()));
-        //LINQ END
-        temp.scriptHash = change_address!=null?change_address:current_wallet.getChangeAddress();
-        tx.outputs = new TransactionOutput[]{temp};
-            return (ClaimTransaction) signTransaction(tx);
+        List<ClaimPacker.Batch> batches = planClaims();
+        if (batches.isEmpty()) return null;
 
+        ClaimTransaction tx = ClaimPipeline.build(batches.get(0), change_address != null ?
+                change_address : current_wallet.getChangeAddress());
+        return (ClaimTransaction) signTransaction(tx);
     }
 
 
@@ -126,93 +182,57 @@ public class Coins {
 
     public ClaimTransaction[] claimAll(UInt160 change_address) {
 
-        if (this.availableBonus() == Fixed8.ZERO) {
-            System.out.println("no gas to claim");
+        if (Fixed8.ZERO.equals(this.availableBonus())) {
+            ConsoleHelper.writeLine("no gas to claim");
             return null;
         }
 
-        //LINQ START
-/*        CoinReference[] claims = current_wallet.getUnclaimedCoins().Select(p = > p.Reference)
-        .toArray();*/
-        CoinReference[] claims = StreamSupport.stream(current_wallet.getUnclaimedCoins()
-                .spliterator(), false).map(p -> p.reference).toArray(CoinReference[]::new);
-        //LINQ END
-        if (claims.length == 0) return null;
-
-        Snapshot snapshot = Blockchain.singleton().getSnapshot();
-        int claim_count = (claims.length - 1) / MAX_CLAIMS_AMOUNT + 1;
-        List<ClaimTransaction> txs = new ArrayList<ClaimTransaction>();
-        if (claim_count > 1) {
-            System.out.println("total claims: {claims.Length}, processing(0/{claim_count})...");
+        List<ClaimPacker.Batch> batches = planClaims();
+        if (batches.isEmpty()) return null;
+        if (batches.size() > 1) {
+            ConsoleHelper.writeLine(String.format("total claims: %d, processing in %d batches...",
+                    batches.stream().mapToInt(p -> p.claims.length).sum(), batches.size()));
         }
-        for (int i = 0; i < claim_count; i++) {
-            if (i > 0) {
-                System.out.println("{i * MAX_CLAIMS_AMOUNT} claims processed({i}/{claim_count})...");
-            }
-            ClaimTransaction tx = new ClaimTransaction();
-            //LINQ START
-            //tx.claims=claims.Skip(i * MAX_CLAIMS_AMOUNT).Take(MAX_CLAIMS_AMOUNT).ToArray();
-            tx.claims=Arrays.asList(claims).stream().skip(i * MAX_CLAIMS_AMOUNT).limit(MAX_CLAIMS_AMOUNT)
-                    .toArray(CoinReference[]::new);
-            //LINQ END
-            tx.attributes = new TransactionAttribute[0];
-            tx.inputs=new CoinReference[0];
-            TransactionOutput temp=new TransactionOutput();
-            temp.assetId=Blockchain.UtilityToken.hash();
-            //LINQ START
-            //temp.value=snapshot.calculateBonus(claims.Skip(i * MAX_CLAIMS_AMOUNT).Take
-                    //(MAX_CLAIMS_AMOUNT));
-            temp.value=snapshot.calculateBonus(Arrays.asList(claims).stream().skip(i*MAX_CLAIMS_AMOUNT)
-                    .limit(MAX_CLAIMS_AMOUNT).collect(Collectors.toList()));
-            //LINQ END
-            temp.scriptHash=change_address!=null?change_address:current_wallet.getChangeAddress();
-            tx.outputs=new TransactionOutput[]{temp};
-            if ((tx = (ClaimTransaction) signTransaction(tx)) != null) {
-                txs.add(tx);
+        ClaimPipeline pipeline = new ClaimPipeline(current_wallet, submitter, CLAIM_PARALLELISM);
+        // 回调在relay线程上执行，输出仍需回到调用命令的控制台或控制连接
+        Consumer<String> out = ConsoleHelper.lineWriter();
+        return pipeline.run(batches, change_address, (index, total, tx, reason) -> {
+            if (tx == null) {
+                out.accept(String.format("batch %d/%d: Incomplete Signature", index + 1, total));
+            } else if (reason == RelayResultReason.Succeed) {
+                out.accept(String.format("batch %d/%d: %s", index + 1, total, tx.hash()));
             } else {
-                break;
+                out.accept(String.format("batch %d/%d: Local Node could not relay transaction: " +
+                        "%s (%s)", index + 1, total, tx.hash(), reason));
             }
-        }
-
-        return txs.toArray(new ClaimTransaction[0]);
+        });
     }
 
 
     private Transaction signTransaction(Transaction tx) {
         if (tx == null) {
-            System.out.println("no transaction specified");
+            ConsoleHelper.writeError("no transaction specified");
             return null;
         }
-        ContractParametersContext context;
-
+        RelayResultReason result;
         try {
-            context = new ContractParametersContext(tx);
-        } catch (InvalidOperationException e) {
-            System.out.println("unsynchronized block");
+            result = submitter.submit(current_wallet, tx).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof InvalidOperationException) {
+                ConsoleHelper.writeError("unsynchronized block");
+            } else if (e.getCause() instanceof IncompleteSignatureException) {
+                ConsoleHelper.writeError(String.format("Incomplete Signature: %s",
+                        ((IncompleteSignatureException) e.getCause()).getContext()));
+            } else {
+                throw e;
+            }
             return null;
         }
-
-        current_wallet.sign(context);
-        if (context.completed()) {
-            context.verifiable.setWitnesses(context.getWitnesses());
-            current_wallet.applyTransaction(tx);
-            //此处与C# AKKA 实现不同，60s暂定
-            Timeout timeout = Timeout.create(Duration.ofSeconds(60));
-            Future<Object> future= Patterns.ask(system.blockchain, tx,timeout);
-            try {
-                RelayResultReason result = (RelayResultReason)Await.result(future, timeout.duration());
-                boolean relay_result = result.equals(RelayResultReason.Succeed);
-                if (relay_result) {
-                    return tx;
-                } else {
-                    System.out.println("Local Node could not relay transaction: {tx.Hash.ToString()}");
-                }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        } else {
-            System.out.println("Incomplete Signature: {context.ToString()}");
+        if (result == RelayResultReason.Succeed) {
+            return tx;
         }
+        ConsoleHelper.writeError(String.format("Local Node could not relay transaction: %s (%s)", tx.hash(),
+                result));
         return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package neo.shell;
+
+import neo.smartcontract.ContractParametersContext;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: IncompleteSignatureException
+ * @Package neo.shell
+ * @Description: 钱包无法完成交易的全部签名
+ * @date Created in 11:05 2026/10/18
+ */
+public class IncompleteSignatureException extends RuntimeException {
+
+    private final ContractParametersContext context;
+
+    public IncompleteSignatureException(ContractParametersContext context) {
+        super("Incomplete Signature");
+        this.context = context;
+    }
+
+    public ContractParametersContext getContext() {
+        return context;
+    }
+}
@@ -0,0 +1,75 @@
+package neo.shell;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import neo.wallets.KeyPair;
+import neo.wallets.WalletAccount;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: KeyExporter
+ * @Package neo.shell
+ * @Description: 流式导出私钥：在线程池上解密和编码，按账户顺序输出，同时处理中的账户数有上限
+ * @date Created in 15:20 2026/10/18
+ */
+public class KeyExporter {
+
+    /**
+     * NEP-2默认的scrypt参数
+     */
+    private static final int SCRYPT_N = 16384;
+    private static final int SCRYPT_R = 8;
+    private static final int SCRYPT_P = 8;
+
+    private final int parallelism;
+
+    public KeyExporter(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:导出账户的私钥，输出顺序与accounts相同，没有私钥的账户会被跳过
+     * @param accounts 账户
+     * @param nep2Passphrase NEP-2加密口令，为null时导出WIF
+     * @param sink 逐个接收编码后的私钥，在调用线程上调用
+     * @return 导出的个数
+     * @date:2026/10/18
+     */
+    public int run(Iterable<WalletAccount> accounts, String nep2Passphrase, Consumer<String> sink) {
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        Deque<CompletableFuture<String>> window = new ArrayDeque<>();
+        int maxWindow = parallelism * 4;
+        int count = 0;
+        try {
+            for (WalletAccount account : accounts) {
+                if (!account.hasKey()) continue;
+                window.add(CompletableFuture.supplyAsync(() -> encode(account.getKey(), nep2Passphrase),
+                        workers));
+                // 窗口满时按顺序等待最早的结果，内存只与窗口大小有关
+                while (window.size() >= maxWindow || (!window.isEmpty() && window.peek().isDone())) {
+                    sink.accept(window.poll().join());
+                    count++;
+                }
+            }
+            while (!window.isEmpty()) {
+                sink.accept(window.poll().join());
+                count++;
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return count;
+    }
+
+    private static String encode(KeyPair key, String nep2Passphrase) {
+        return nep2Passphrase == null ? key.export() : key.export(nep2Passphrase, SCRYPT_N, SCRYPT_R,
+                SCRYPT_P);
+    }
+}
@@ -0,0 +1,243 @@
+package neo.shell;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import neo.UInt160;
+import neo.cryptography.ecc.ECC;
+import neo.cryptography.ecc.ECPoint;
+import neo.csharp.BitConverter;
+import neo.smartcontract.Contract;
+import neo.wallets.NEP6.NEP6Wallet;
+import neo.wallets.Wallet;
+import neo.wallets.WalletAccount;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: KeyImporter
+ * @Package neo.shell
+ * @Description: 流式导入私钥文件：分块读取，在线程池上解码、计算公钥并创建账户，跳过已有账户，分批保存钱包，中断后从上次保存的行继续
+ * @date Created in 10:40 2026/10/18
+ */
+public class KeyImporter {
+
+    /**
+     * 进度回调，在调用run的线程上按时间间隔调用
+     */
+    public interface Progress {
+        void onProgress(long lines, int imported, int duplicates, int failed);
+    }
+
+    /**
+     * 导入结果
+     */
+    public static class Result {
+        public long lines;
+        public long resumedFrom;
+        public int imported;
+        public int duplicates;
+        public int failed;
+    }
+
+    /**
+     * 一块已提交的行，lastLine为块中最后一行的行号
+     */
+    private static class Chunk {
+        final long lastLine;
+        final Future<int[]> counts;
+
+        Chunk(long lastLine, Future<int[]> counts) {
+            this.lastLine = lastLine;
+            this.counts = counts;
+        }
+    }
+
+    private final Wallet wallet;
+    private final int parallelism;
+    private final int chunkSize;
+    private final int checkpointSize;
+    private final long progressIntervalMillis;
+    /**
+     * 创建账户时持有读锁，保存钱包时持有写锁
+     */
+    private final ReadWriteLock saveLock = new ReentrantReadWriteLock();
+    private final Set<UInt160> seen = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param wallet                 钱包
+     * @param parallelism            工作线程数
+     * @param chunkSize              每块的行数
+     * @param checkpointSize         每导入多少行保存一次钱包和进度
+     * @param progressIntervalMillis 进度回调的最小间隔
+     */
+    public KeyImporter(Wallet wallet, int parallelism, int chunkSize, int checkpointSize,
+                       long progressIntervalMillis) {
+        this.wallet = wallet;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.checkpointSize = checkpointSize;
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:导入文件中的私钥，每行一个WIF或64位十六进制私钥。进度保存在<file>.progress中，全部完成后删除
+     * @param file 私钥文件
+     * @param progress 进度回调，可以为null
+     * @date:2026/10/18
+     */
+    public Result run(Path file, Progress progress) throws IOException {
+        Path progressFile = Paths.get(file.toString() + ".progress");
+        Result result = new Result();
+        result.resumedFrom = readProgress(progressFile);
+        for (WalletAccount account : wallet.getAccounts()) seen.add(account.scriptHash);
+
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        Deque<Chunk> window = new ArrayDeque<>();
+        long[] committed = {result.resumedFrom, result.resumedFrom, 0};
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<String> lines = new ArrayList<>(chunkSize);
+            String text;
+            long line = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (line <= result.resumedFrom) continue;
+                text = text.trim();
+                if (!text.isEmpty()) lines.add(text);
+                if (lines.size() >= chunkSize) {
+                    List<String> chunk = lines;
+                    window.add(new Chunk(line, workers.submit(() -> importChunk(chunk))));
+                    lines = new ArrayList<>(chunkSize);
+                    drain(window, parallelism * 2, result, committed, progressFile, progress);
+                }
+            }
+            result.lines = line;
+            if (!lines.isEmpty()) {
+                List<String> chunk = lines;
+                window.add(new Chunk(line, workers.submit(() -> importChunk(chunk))));
+            }
+            drain(window, 0, result, committed, progressFile, progress);
+            checkpoint(progressFile, line);
+        } finally {
+            workers.shutdownNow();
+        }
+        Files.deleteIfExists(progressFile);
+        if (progress != null)
+            progress.onProgress(result.lines, result.imported, result.duplicates, result.failed);
+        return result;
+    }
+
+    /**
+     * 按提交顺序收取已完成的块，直到窗口中的块不超过maxWindow
+     *
+     * @param committed [已收取的最后一行, 上次保存时的行, 上次回调进度的时间]
+     */
+    private void drain(Deque<Chunk> window, int maxWindow, Result result, long[] committed,
+                       Path progressFile, Progress progress) throws IOException {
+        while (!window.isEmpty() && (window.size() > maxWindow || window.peek().counts.isDone())) {
+            Chunk chunk = window.poll();
+            int[] counts;
+            try {
+                counts = chunk.counts.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            result.imported += counts[0];
+            result.duplicates += counts[1];
+            result.failed += counts[2];
+            committed[0] = chunk.lastLine;
+            if (committed[0] - committed[1] >= checkpointSize) {
+                checkpoint(progressFile, committed[0]);
+                committed[1] = committed[0];
+            }
+            long now = System.currentTimeMillis();
+            if (progress != null && now - committed[2] >= progressIntervalMillis) {
+                progress.onProgress(committed[0], result.imported, result.duplicates, result.failed);
+                committed[2] = now;
+            }
+        }
+    }
+
+    /**
+     * @return [导入数, 重复数, 失败数]
+     */
+    private int[] importChunk(List<String> lines) {
+        int[] counts = new int[3];
+        List<byte[]> privateKeys = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            try {
+                byte[] privateKey = line.length() == 64 ? BitConverter.hexToBytes(line) : Wallet
+                        .getPrivateKeyFromWIF(line);
+                if (privateKey.length != 32) throw new IllegalArgumentException();
+                privateKeys.add(privateKey);
+            } catch (Exception e) {
+                counts[2]++;
+            }
+        }
+        byte[][] keys = BatchKeyGenerator.derive(privateKeys.toArray(new byte[0][]));
+        for (byte[] privateKey : privateKeys) Arrays.fill(privateKey, (byte) 0);
+        for (byte[] key : keys) {
+            byte[] encoded = new byte[65];
+            encoded[0] = 0x04;
+            System.arraycopy(key, 0, encoded, 1, 64);
+            ECPoint publicKey = ECPoint.decodePoint(encoded, ECC.Secp256r1.getCurve());
+            if (!seen.add(Contract.createSignatureContract(publicKey).scriptHash())) {
+                counts[1]++;
+            } else {
+                saveLock.readLock().lock();
+                try {
+                    wallet.createAccount(key);
+                } finally {
+                    saveLock.readLock().unlock();
+                }
+                counts[0]++;
+            }
+            Arrays.fill(key, (byte) 0);
+        }
+        return counts;
+    }
+
+    private void checkpoint(Path progressFile, long line) throws IOException {
+        if (wallet instanceof NEP6Wallet) {
+            saveLock.writeLock().lock();
+            try {
+                ((NEP6Wallet) wallet).save();
+            } finally {
+                saveLock.writeLock().unlock();
+            }
+        }
+        Files.write(progressFile, Collections.singletonList(Long.toString(line)), StandardCharsets.UTF_8);
+    }
+
+    private static long readProgress(Path progressFile) throws IOException {
+        if (!Files.exists(progressFile)) return 0;
+        List<String> lines = Files.readAllLines(progressFile, StandardCharsets.UTF_8);
+        try {
+            return lines.isEmpty() ? 0 : Long.parseLong(lines.get(0).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
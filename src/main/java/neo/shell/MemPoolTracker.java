@@ -0,0 +1,349 @@
+package neo.shell;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import neo.UInt256;
+import neo.csharp.Out;
+import neo.ledger.Blockchain;
+import neo.log.notr.TR;
+import neo.network.p2p.payloads.Block;
+import neo.network.p2p.payloads.Transaction;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: MemPoolTracker
+ * @Package neo.shell
+ * @Description: 内存池跟踪：按交易哈希保存类型、大小、每字节手续费和开始跟踪的时间，交易进出内存池时增量更新
+ * 手续费、大小和类型的统计，查询时只遍历已跟踪的交易，不复制整个内存池。第一次查询时才开始跟踪，
+ * 长时间没有查询时停止并释放
+ * @date Created in 09:30 2026/10/18
+ */
+public class MemPoolTracker {
+
+    /**
+     * 每字节手续费的桶：0为免费，k为[2^(k-1), 2^k)聪/字节
+     */
+    public static final int FEE_BUCKETS = 40;
+    /**
+     * 大小的桶：0为小于256字节，k为[2^(k+7), 2^(k+8))字节，最后一个桶不设上限
+     */
+    public static final int SIZE_BUCKETS = 10;
+    /**
+     * 已跟踪时长的桶上界，秒，最后一个桶不设上限
+     */
+    public static final long[] TRACKED_BOUNDS = {60, 300, 900, 3600};
+
+    public enum Sort {
+        FEE, SIZE, TRACKED
+    }
+
+    /**
+     * 一笔被跟踪的交易，字段在加入时确定
+     */
+    public static class Entry {
+        public final UInt256 hash;
+        public final String type;
+        public final int size;
+        /**
+         * 网络手续费除以大小，聪/字节
+         */
+        public final long feePerByte;
+        /**
+         * 开始跟踪这笔交易的时间。内存池不公开交易进入的时间，跟踪开始或空闲后重新开始时，池中已有的交易都记为当时，
+         * 所以这不是交易在内存池中的年龄
+         */
+        public final long trackedSinceMillis;
+        private long generation;
+
+        Entry(Transaction tx, long now) {
+            this(tx.hash(), tx.getClass().getSimpleName(), tx.size(),
+                    tx.size() == 0 ? 0 : tx.getNetworkFee().getData() / tx.size(), now);
+        }
+
+        Entry(UInt256 hash, String type, int size, long feePerByte, long trackedSinceMillis) {
+            this.hash = hash;
+            this.type = type;
+            this.size = size;
+            this.feePerByte = feePerByte;
+            this.trackedSinceMillis = trackedSinceMillis;
+        }
+    }
+
+    /**
+     * 统计快照
+     */
+    public static class Stats {
+        public long count;
+        public long[] feeBuckets = new long[FEE_BUCKETS];
+        public long[] sizeBuckets = new long[SIZE_BUCKETS];
+        public long[] trackedBuckets = new long[TRACKED_BOUNDS.length + 1];
+        public Map<String, Long> types = new TreeMap<>();
+        public long totalBytes;
+    }
+
+    private final PersistObserver observer;
+    private final Consumer<Block> listener = this::onPersist;
+    private final Map<UInt256, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray feeBuckets = new AtomicLongArray(FEE_BUCKETS);
+    private final AtomicLongArray sizeBuckets = new AtomicLongArray(SIZE_BUCKETS);
+    private final Map<String, LongAdder> types = new ConcurrentHashMap<>();
+    private final LongAdder totalBytes = new LongAdder();
+    private final int intervalSeconds;
+    private final long idleMillis;
+    private final long fullRefreshMillis;
+    private long generation;
+    private ScheduledExecutorService scheduler;
+    private volatile long lastQueryMillis;
+    /**
+     * 上次比对后有区块持久化，内存池的内容可能变化
+     */
+    private volatile boolean dirty;
+    private long lastFullRefreshMillis;
+    /**
+     * 比对期间持久化的区块中的交易，复制内存池时它们可能还在池中，比对时不能再加回来。不在比对时为null
+     */
+    private Set<UInt256> persistedDuringRefresh;
+
+    /**
+     * @param observer          区块持久化事件
+     * @param intervalSeconds   检查内存池的间隔
+     * @param idleSeconds       超过这么久没有查询时停止跟踪
+     * @param fullRefreshSeconds 交易数没有变化时，最长隔多久仍然完整比对一次，用于发现数量相同的替换
+     */
+    public MemPoolTracker(PersistObserver observer, int intervalSeconds, int idleSeconds,
+                          int fullRefreshSeconds) {
+        this.observer = observer;
+        this.intervalSeconds = intervalSeconds;
+        this.idleMillis = idleSeconds * 1000L;
+        this.fullRefreshMillis = fullRefreshSeconds * 1000L;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:查询前调用，没有在跟踪时先完整读取一次内存池，再每intervalSeconds秒检查一次，
+     * 区块持久化时立即移除其中的交易
+     * @date:2026/10/18
+     */
+    private synchronized void ensureStarted() {
+        lastQueryMillis = System.currentTimeMillis();
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mempool-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        observer.addListener(listener);
+        refresh(true);
+        scheduler.scheduleWithFixedDelay(() -> refresh(false), intervalSeconds, intervalSeconds, TimeUnit
+                .SECONDS);
+    }
+
+    /**
+     * 停止跟踪并清空统计，下次查询时重新开始
+     */
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        observer.removeListener(listener);
+        scheduler.shutdownNow();
+        scheduler = null;
+        entries.clear();
+        for (int i = 0; i < FEE_BUCKETS; i++) feeBuckets.set(i, 0);
+        for (int i = 0; i < SIZE_BUCKETS; i++) sizeBuckets.set(i, 0);
+        types.clear();
+        totalBytes.reset();
+    }
+
+    private synchronized boolean stopIfIdle(long now) {
+        if (now - lastQueryMillis <= idleMillis) return false;
+        stop();
+        return true;
+    }
+
+    private void onPersist(Block block) {
+        dirty = true;
+        if (block.transactions == null) return;
+        synchronized (this) {
+            for (Transaction tx : block.transactions) {
+                remove(tx.hash());
+                if (persistedDuringRefresh != null) persistedDuringRefresh.add(tx.hash());
+            }
+        }
+    }
+
+    /**
+     * 与内存池比对：新出现的交易加入，不再存在的交易移除。没有区块持久化且交易数与跟踪的相同时跳过，
+     * 不复制内存池
+     *
+     * @param force 是否一定完整比对
+     */
+    private void refresh(boolean force) {
+        try {
+            long now = System.currentTimeMillis();
+            if (!force && stopIfIdle(now)) return;
+            if (!force && !dirty && now - lastFullRefreshMillis < fullRefreshMillis
+                    && Blockchain.singleton().getMemPool().count() == entries.size())
+                return;
+            dirty = false;
+            synchronized (this) {
+                persistedDuringRefresh = new HashSet<>();
+            }
+            Out<Collection<Transaction>> verified = new Out<>();
+            verified.set(new ArrayList<>());
+            Out<Collection<Transaction>> unverified = new Out<>();
+            unverified.set(new ArrayList<>());
+            Blockchain.singleton().getMemPool().getVerifiedAndUnverifiedTransactions(verified, unverified);
+            synchronized (this) {
+                Set<UInt256> persisted = persistedDuringRefresh;
+                persistedDuringRefresh = null;
+                // 比对期间已停止
+                if (scheduler == null) return;
+                lastFullRefreshMillis = now;
+                generation++;
+                mark(verified.get(), persisted, now);
+                mark(unverified.get(), persisted, now);
+                entries.values().removeIf(entry -> {
+                    if (entry.generation == generation) return false;
+                    uncount(entry);
+                    return true;
+                });
+            }
+        } catch (Exception e) {
+            TR.warn(e);
+        }
+    }
+
+    private void mark(Collection<Transaction> transactions, Set<UInt256> persisted, long now) {
+        for (Transaction tx : transactions) {
+            if (persisted.contains(tx.hash())) continue;
+            Entry entry = entries.get(tx.hash());
+            if (entry == null) {
+                entry = new Entry(tx, now);
+                entries.put(entry.hash, entry);
+                count(entry);
+            }
+            entry.generation = generation;
+        }
+    }
+
+    private void remove(UInt256 hash) {
+        Entry entry = entries.remove(hash);
+        if (entry != null) uncount(entry);
+    }
+
+    private void count(Entry entry) {
+        feeBuckets.incrementAndGet(feeBucket(entry.feePerByte));
+        sizeBuckets.incrementAndGet(sizeBucket(entry.size));
+        types.computeIfAbsent(entry.type, k -> new LongAdder()).increment();
+        totalBytes.add(entry.size);
+    }
+
+    private void uncount(Entry entry) {
+        feeBuckets.decrementAndGet(feeBucket(entry.feePerByte));
+        sizeBuckets.decrementAndGet(sizeBucket(entry.size));
+        types.get(entry.type).decrement();
+        totalBytes.add(-entry.size);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:按条件挑选前limit笔交易，只保留一个大小为limit的堆
+     * @param type 交易类型，不区分大小写，可以省略Transaction后缀，为null时不过滤
+     * @param sort FEE和SIZE从大到小，TRACKED按开始跟踪的时间从早到晚
+     * @date:2026/10/18
+     */
+    public List<Entry> select(String type, Sort sort, int limit) {
+        ensureStarted();
+        return top(entries.values(), type, sort, limit);
+    }
+
+    static List<Entry> top(Collection<Entry> entries, String type, Sort sort, int limit) {
+        Comparator<Entry> order;
+        switch (sort) {
+            case SIZE:
+                order = Comparator.comparingInt((Entry e) -> e.size).reversed();
+                break;
+            case TRACKED:
+                order = Comparator.comparingLong(e -> e.trackedSinceMillis);
+                break;
+            default:
+                order = Comparator.comparingLong((Entry e) -> e.feePerByte).reversed();
+        }
+        // 堆顶是当前保留的最差一笔
+        // 不按limit预先分配，堆的大小不会超过跟踪的交易数
+        PriorityQueue<Entry> top = new PriorityQueue<>(Math.max(1, Math.min(limit, entries.size())), order
+                .reversed());
+        for (Entry entry : entries) {
+            if (type != null && !matches(entry.type, type)) continue;
+            if (top.size() < limit) {
+                top.add(entry);
+            } else if (limit > 0 && order.compare(entry, top.peek()) < 0) {
+                top.poll();
+                top.add(entry);
+            }
+        }
+        List<Entry> list = new ArrayList<>(top);
+        list.sort(order);
+        return list;
+    }
+
+    public Stats getStats() {
+        ensureStarted();
+        Stats stats = new Stats();
+        stats.count = entries.size();
+        for (int i = 0; i < FEE_BUCKETS; i++) stats.feeBuckets[i] = feeBuckets.get(i);
+        for (int i = 0; i < SIZE_BUCKETS; i++) stats.sizeBuckets[i] = sizeBuckets.get(i);
+        for (Map.Entry<String, LongAdder> entry : types.entrySet()) {
+            long n = entry.getValue().sum();
+            if (n > 0) stats.types.put(entry.getKey(), n);
+        }
+        stats.totalBytes = totalBytes.sum();
+        // 已跟踪时长随时间变化，查询时计算
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries.values())
+            stats.trackedBuckets[trackedBucket((now - entry.trackedSinceMillis) / 1000)]++;
+        return stats;
+    }
+
+    public List<String> getTypes() {
+        List<String> list = new ArrayList<>(types.keySet());
+        Collections.sort(list);
+        return list;
+    }
+
+    private static boolean matches(String type, String filter) {
+        return type.equalsIgnoreCase(filter) || type.equalsIgnoreCase(filter + "Transaction");
+    }
+
+    static int feeBucket(long feePerByte) {
+        if (feePerByte <= 0) return 0;
+        return Math.min(FEE_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(feePerByte));
+    }
+
+    static int sizeBucket(int size) {
+        if (size < 256) return 0;
+        return Math.min(SIZE_BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(size) - 8);
+    }
+
+    static int trackedBucket(long seconds) {
+        for (int i = 0; i < TRACKED_BOUNDS.length; i++)
+            if (seconds < TRACKED_BOUNDS[i]) return i;
+        return TRACKED_BOUNDS.length;
+    }
+}
@@ -0,0 +1,252 @@
+package neo.shell;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import neo.ledger.Blockchain;
+import neo.log.notr.TR;
+import neo.network.p2p.LocalNode;
+import neo.network.p2p.RemoteNode;
+import neo.network.p2p.payloads.Block;
+import neo.wallets.Wallet;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: NodeMetrics
+ * @Package neo.shell
+ * @Description: Prometheus格式的节点指标：区块和交易计数在持久化事件中累加，其它状态由后台定时采样，
+ * 抓取时只读取已采集的值
+ * @date Created in 10:20 2026/10/18
+ */
+public class NodeMetrics {
+
+    /**
+     * 一次采样的结果，采样线程生成后整体替换
+     */
+    private static class Sample {
+        long walletHeight = -1;
+        long height;
+        long headerHeight;
+        int connected;
+        int unconnected;
+        int memPoolCount;
+        int memPoolVerified;
+        int memPoolUnverified;
+        double blocksPerSecond;
+        double transactionsPerSecond;
+        long heapUsed;
+        long heapCommitted;
+        long heapMax;
+        List<String> peers = Collections.emptyList();
+        List<Long> peerHeights = Collections.emptyList();
+        List<String> collectors = Collections.emptyList();
+        List<long[]> collections = Collections.emptyList();
+    }
+
+    private final PersistObserver observer;
+    private final Supplier<Wallet> wallet;
+    private final LongAdder blocks = new LongAdder();
+    private final LongAdder transactions = new LongAdder();
+    private final Consumer<Block> listener = this::onPersist;
+    private volatile long lastPersistMillis;
+    private volatile Sample sample = new Sample();
+    private long lastBlocks;
+    private long lastTransactions;
+    private long lastSampleNanos = System.nanoTime();
+    private ScheduledExecutorService sampler;
+    private HttpServer server;
+
+    /**
+     * @param observer 区块持久化事件
+     * @param wallet   当前打开的钱包，可能返回null
+     */
+    public NodeMetrics(PersistObserver observer, Supplier<Wallet> wallet) {
+        this.observer = observer;
+        this.wallet = wallet;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:开始采样，并在bindAddress:port的/metrics上提供Prometheus文本格式的指标
+     * @param sampleIntervalSeconds 采样间隔
+     * @date:2026/10/18
+     */
+    public synchronized void start(String bindAddress, int port, int sampleIntervalSeconds) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        observer.addListener(listener);
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleWithFixedDelay(this::sample, 0, sampleIntervalSeconds, TimeUnit.SECONDS);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        observer.removeListener(listener);
+        server.stop(0);
+        sampler.shutdownNow();
+        server = null;
+    }
+
+    private void onPersist(Block block) {
+        blocks.increment();
+        if (block.transactions != null) transactions.add(block.transactions.length);
+        lastPersistMillis = System.currentTimeMillis();
+    }
+
+    private void sample() {
+        try {
+            Sample s = new Sample();
+            Wallet current = wallet.get();
+            if (current != null) s.walletHeight = current.getWalletHeight().longValue();
+            Blockchain blockchain = Blockchain.singleton();
+            s.height = blockchain.height().longValue();
+            s.headerHeight = blockchain.headerHeight().longValue();
+            LocalNode localNode = LocalNode.singleton();
+            s.connected = localNode.getConnectedCount();
+            s.unconnected = localNode.getUnconnectedCount();
+            s.memPoolCount = blockchain.getMemPool().count();
+            s.memPoolVerified = blockchain.getMemPool().verifiedCount();
+            s.memPoolUnverified = blockchain.getMemPool().unVerifiedCount();
+
+            long now = System.nanoTime();
+            long blockCount = blocks.sum(), transactionCount = transactions.sum();
+            double seconds = (now - lastSampleNanos) / 1e9;
+            if (seconds > 0) {
+                s.blocksPerSecond = (blockCount - lastBlocks) / seconds;
+                s.transactionsPerSecond = (transactionCount - lastTransactions) / seconds;
+            }
+            lastSampleNanos = now;
+            lastBlocks = blockCount;
+            lastTransactions = transactionCount;
+
+            List<String> peers = new ArrayList<>();
+            List<Long> peerHeights = new ArrayList<>();
+            for (RemoteNode node : localNode.getRemoteNodes()) {
+                if (node.version == null) continue;
+                peers.add(node.remote.getAddress().getHostAddress() + ":" + node.remote.getPort());
+                peerHeights.add(node.version.startHeight.longValue());
+            }
+            s.peers = peers;
+            s.peerHeights = peerHeights;
+
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            s.heapUsed = heap.getUsed();
+            s.heapCommitted = heap.getCommitted();
+            s.heapMax = heap.getMax();
+            List<String> collectors = new ArrayList<>();
+            List<long[]> collections = new ArrayList<>();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collectors.add(gc.getName());
+                collections.add(new long[]{gc.getCollectionCount(), gc.getCollectionTime()});
+            }
+            s.collectors = collectors;
+            s.collections = collections;
+            sample = s;
+        } catch (Exception e) {
+            TR.warn(e);
+        }
+    }
+
+    /**
+     * Prometheus文本格式
+     */
+    String render() {
+        Sample s = sample;
+        StringBuilder sb = new StringBuilder(2048);
+        if (s.walletHeight >= 0) gauge(sb, "neo_wallet_height", "Wallet synchronized height", s.walletHeight);
+        gauge(sb, "neo_block_height", "Local block height", s.height);
+        gauge(sb, "neo_header_height", "Local header height", s.headerHeight);
+        counter(sb, "neo_blocks_persisted_total", "Blocks persisted since start", blocks.sum());
+        counter(sb, "neo_transactions_persisted_total", "Transactions persisted since start", transactions
+                .sum());
+        gauge(sb, "neo_block_persist_rate", "Blocks persisted per second over the last sample interval",
+                s.blocksPerSecond);
+        gauge(sb, "neo_transactions_per_second", "Transactions persisted per second over the last sample " +
+                "interval", s.transactionsPerSecond);
+        gauge(sb, "neo_last_persist_timestamp_seconds", "Time of the last persisted block",
+                lastPersistMillis / 1000.0);
+        gauge(sb, "neo_peers_connected", "Connected peers", s.connected);
+        gauge(sb, "neo_peers_unconnected", "Known unconnected peers", s.unconnected);
+        gauge(sb, "neo_mempool_transactions", "Transactions in the memory pool", s.memPoolCount);
+        gauge(sb, "neo_mempool_verified_transactions", "Verified transactions in the memory pool",
+                s.memPoolVerified);
+        gauge(sb, "neo_mempool_unverified_transactions", "Unverified transactions in the memory pool",
+                s.memPoolUnverified);
+
+        header(sb, "neo_peer_height", "gauge", "Start height reported by the peer");
+        for (int i = 0; i < s.peers.size(); i++)
+            sb.append("neo_peer_height{peer=\"").append(s.peers.get(i)).append("\"} ")
+                    .append(s.peerHeights.get(i)).append('\n');
+        header(sb, "neo_peer_height_lag", "gauge", "Local block height minus the peer height");
+        for (int i = 0; i < s.peers.size(); i++)
+            sb.append("neo_peer_height_lag{peer=\"").append(s.peers.get(i)).append("\"} ")
+                    .append(s.height - s.peerHeights.get(i)).append('\n');
+
+        gauge(sb, "jvm_heap_used_bytes", "Used heap", s.heapUsed);
+        gauge(sb, "jvm_heap_committed_bytes", "Committed heap", s.heapCommitted);
+        gauge(sb, "jvm_heap_max_bytes", "Max heap", s.heapMax);
+        header(sb, "jvm_gc_collections_total", "counter", "GC collections");
+        for (int i = 0; i < s.collectors.size(); i++)
+            sb.append("jvm_gc_collections_total{gc=\"").append(s.collectors.get(i)).append("\"} ")
+                    .append(s.collections.get(i)[0]).append('\n');
+        header(sb, "jvm_gc_collection_seconds_total", "counter", "Time spent in GC");
+        for (int i = 0; i < s.collectors.size(); i++)
+            sb.append("jvm_gc_collection_seconds_total{gc=\"").append(s.collectors.get(i)).append("\"} ")
+                    .append(s.collections.get(i)[1] / 1000.0).append('\n');
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, "gauge", help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, double value) {
+        header(sb, name, "gauge", help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, "counter", help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+}
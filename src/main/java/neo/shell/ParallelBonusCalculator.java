@@ -0,0 +1,130 @@
+package neo.shell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import neo.Fixed8;
+import neo.UInt256;
+import neo.csharp.Uint;
+import neo.ledger.Blockchain;
+import neo.ledger.TransactionState;
+import neo.network.p2p.payloads.CoinReference;
+import neo.persistence.Snapshot;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: ParallelBonusCalculator
+ * @Package neo.shell
+ * @Description: 在fork-join线程池上并行计算GAS bonus，结果与Snapshot.calculateBonus一致。Snapshot及其缓存
+ * 不保证线程安全，每个工作线程使用自己的snapshot
+ * @date Created in 16:20 2026/10/18
+ */
+public class ParallelBonusCalculator {
+
+    /**
+     * 同一笔交易的全部输出，calculateBonus按交易分组计算，拆分时不能把同组的币分开
+     */
+    private static class Group {
+        final long startHeight;
+        final List<CoinReference> references;
+
+        Group(long startHeight, List<CoinReference> references) {
+            this.startHeight = startHeight;
+            this.references = references;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    /**
+     * @param pool      计算使用的线程池
+     * @param threshold 每个子任务最多处理的币数量，小于该数量时不再拆分
+     */
+    public ParallelBonusCalculator(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = Math.max(1, threshold);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:按起始高度排序后分段，每个工作线程在自己的snapshot上计算部分和，最后用Fixed8相加
+     * @param snapshot 调用线程的snapshot，只用于分组
+     * @param inputs 未花费的NEO
+     * @param height 计算到的高度
+     * @date:2026/10/18
+     */
+    public Fixed8 calculateBonus(Snapshot snapshot, Collection<CoinReference> inputs, Uint height) {
+        Map<UInt256, List<CoinReference>> byHash = new HashMap<>();
+        for (CoinReference reference : inputs) {
+            byHash.computeIfAbsent(reference.prevHash, p -> new ArrayList<>()).add(reference);
+        }
+        Group[] groups = new Group[byHash.size()];
+        int i = 0;
+        for (Map.Entry<UInt256, List<CoinReference>> entry : byHash.entrySet()) {
+            TransactionState state = snapshot.getTransactions().tryGet(entry.getKey());
+            // 找不到交易时交给calculateBonus抛出异常
+            long startHeight = state == null ? 0 : state.blockIndex.longValue();
+            groups[i++] = new Group(startHeight, entry.getValue());
+        }
+        Arrays.sort(groups, Comparator.comparingLong(p -> p.startHeight));
+        int[] offsets = new int[groups.length + 1];
+        for (i = 0; i < groups.length; i++) {
+            offsets[i + 1] = offsets[i] + groups[i].references.size();
+        }
+        // 已持久化到height的区块和系统费不会再变，各线程在不同时刻取得的snapshot计算结果一致
+        Map<Thread, Snapshot> snapshots = new ConcurrentHashMap<>();
+        try {
+            return pool.invoke(new BonusTask(snapshots, groups, offsets, 0, groups.length, height));
+        } finally {
+            for (Snapshot s : snapshots.values()) s.dispose();
+        }
+    }
+
+    private class BonusTask extends RecursiveTask<Fixed8> {
+        private final Map<Thread, Snapshot> snapshots;
+        private final Group[] groups;
+        private final int[] offsets;
+        private final int from;
+        private final int to;
+        private final Uint height;
+
+        BonusTask(Map<Thread, Snapshot> snapshots, Group[] groups, int[] offsets, int from, int to, Uint height) {
+            this.snapshots = snapshots;
+            this.groups = groups;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+            this.height = height;
+        }
+
+        @Override
+        protected Fixed8 compute() {
+            if (to - from <= 1 || offsets[to] - offsets[from] <= threshold) {
+                if (from == to) return Fixed8.ZERO;
+                List<CoinReference> references = new ArrayList<>(offsets[to] - offsets[from]);
+                for (int i = from; i < to; i++) {
+                    references.addAll(groups[i].references);
+                }
+                Snapshot snapshot = snapshots.computeIfAbsent(Thread.currentThread(), t -> Blockchain.singleton()
+                        .getSnapshot());
+                return snapshot.calculateBonus(references, height);
+            }
+            int middle = (from + to) >>> 1;
+            BonusTask left = new BonusTask(snapshots, groups, offsets, from, middle, height);
+            BonusTask right = new BonusTask(snapshots, groups, offsets, middle, to, height);
+            left.fork();
+            Fixed8 value = right.compute();
+            return Fixed8.add(left.join(), value);
+        }
+    }
+}
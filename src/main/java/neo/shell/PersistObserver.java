@@ -0,0 +1,77 @@
+package neo.shell;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import neo.NeoSystem;
+import neo.ledger.Blockchain;
+import neo.log.notr.TR;
+import neo.network.p2p.payloads.Block;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: PersistObserver
+ * @Package neo.shell
+ * @Description: 订阅区块持久化事件，并分发给注册的监听者
+ * @date Created in 14:05 2026/10/18
+ */
+public class PersistObserver {
+
+    private final CopyOnWriteArrayList<Consumer<Block>> listeners = new CopyOnWriteArrayList<>();
+    private final NeoSystem system;
+    private final ActorRef subscriber;
+
+    public PersistObserver(NeoSystem system) {
+        this.system = system;
+        this.subscriber = system.actorSystem.actorOf(Props.create(Subscriber.class, this));
+        system.actorSystem.eventStream().subscribe(subscriber, Blockchain.PersistCompleted.class);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:注册监听者，监听者在actor线程上被调用，耗时操作需要自行转到其它线程
+     * @param listener 监听者，参数为刚持久化的区块
+     * @date:2026/10/18
+     */
+    public void addListener(Consumer<Block> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Block> listener) {
+        listeners.remove(listener);
+    }
+
+    public void dispose() {
+        system.actorSystem.eventStream().unsubscribe(subscriber);
+        system.actorSystem.stop(subscriber);
+    }
+
+    private void publish(Block block) {
+        for (Consumer<Block> listener : listeners) {
+            try {
+                listener.accept(block);
+            } catch (Exception e) {
+                TR.warn(e);
+            }
+        }
+    }
+
+    public static class Subscriber extends AbstractActor {
+        private final PersistObserver observer;
+
+        public Subscriber(PersistObserver observer) {
+            this.observer = observer;
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder()
+                    .match(Blockchain.PersistCompleted.class, p -> observer.publish(p.block))
+                    .build();
+        }
+    }
+}
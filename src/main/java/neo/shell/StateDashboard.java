@@ -0,0 +1,181 @@
+package neo.shell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import neo.log.notr.TR;
+import neo.network.p2p.payloads.Block;
+import neo.services.ConsoleHelper;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: StateDashboard
+ * @Package neo.shell
+ * @Description: 节点状态面板：区块持久化时刷新，限制最高刷新频率，只重绘内容变化的行，行缓冲复用
+ * @date Created in 14:30 2026/10/18
+ */
+public class StateDashboard {
+
+    /**
+     * 把面板内容逐行写入lines
+     */
+    public interface Renderer {
+        void render(Lines lines);
+    }
+
+    /**
+     * 可复用的行缓冲
+     */
+    public static class Lines {
+        private final List<StringBuilder> buffers = new ArrayList<>();
+        private int count;
+
+        /**
+         * 返回下一行的缓冲，已清空
+         */
+        public StringBuilder next() {
+            if (count == buffers.size()) buffers.add(new StringBuilder(96));
+            StringBuilder line = buffers.get(count++);
+            line.setLength(0);
+            return line;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public StringBuilder get(int index) {
+            return buffers.get(index);
+        }
+
+        void clear() {
+            count = 0;
+        }
+    }
+
+    private static final String CLEAR_SCREEN = "\033[2J\033[H";
+    private static final String CLEAR_LINE = "\033[K";
+
+    private final PersistObserver observer;
+    private final Renderer renderer;
+    private final long minIntervalMillis;
+    private final long idleIntervalMillis;
+    private final Consumer<Block> listener = block -> requestRefresh();
+    private final StringBuilder frame = new StringBuilder(4096);
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> pending;
+    private Lines current = new Lines();
+    private Lines previous = new Lines();
+    private long lastRender;
+
+    /**
+     * @param observer           区块持久化事件
+     * @param renderer           面板内容
+     * @param minIntervalMillis  两次重绘的最小间隔
+     * @param idleIntervalMillis 没有新区块时的刷新间隔，用于连接数等没有事件通知的内容
+     */
+    public StateDashboard(PersistObserver observer, Renderer renderer, long minIntervalMillis,
+                          long idleIntervalMillis) {
+        this.observer = observer;
+        this.renderer = renderer;
+        this.minIntervalMillis = minIntervalMillis;
+        this.idleIntervalMillis = idleIntervalMillis;
+    }
+
+    public synchronized void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "state-dashboard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ConsoleHelper.write(CLEAR_SCREEN);
+        observer.addListener(listener);
+        scheduler.scheduleWithFixedDelay(this::requestRefresh, 0, idleIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:请求重绘，距上次重绘不足最小间隔时合并到下一次
+     * @date:2026/10/18
+     */
+    public synchronized void requestRefresh() {
+        if (scheduler == null || pending != null && !pending.isDone()) return;
+        long delay = Math.max(0, lastRender + minIntervalMillis - System.currentTimeMillis());
+        pending = scheduler.schedule(this::redraw, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止刷新并等待正在进行的重绘结束
+     */
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = this.scheduler;
+            this.scheduler = null;
+        }
+        if (scheduler == null) return;
+        observer.removeListener(listener);
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 输出一次完整内容，不使用光标控制，用于脚本和控制端口
+     */
+    public void printOnce() {
+        Lines lines = new Lines();
+        renderer.render(lines);
+        for (int i = 0; i < lines.size(); i++) ConsoleHelper.writeLine(lines.get(i).toString());
+    }
+
+    private void redraw() {
+        synchronized (this) {
+            lastRender = System.currentTimeMillis();
+        }
+        try {
+            current.clear();
+            renderer.render(current);
+            frame.setLength(0);
+            for (int i = 0; i < current.size(); i++) {
+                StringBuilder line = current.get(i);
+                if (i < previous.size() && contentEquals(line, previous.get(i))) continue;
+                moveTo(i + 1);
+                frame.append(line).append(CLEAR_LINE);
+            }
+            for (int i = current.size(); i < previous.size(); i++) {
+                moveTo(i + 1);
+                frame.append(CLEAR_LINE);
+            }
+            if (frame.length() == 0) return;
+            moveTo(current.size() + 2);
+            ConsoleHelper.write(frame.toString());
+            Lines swap = previous;
+            previous = current;
+            current = swap;
+        } catch (Exception e) {
+            TR.warn(e);
+        }
+    }
+
+    private void moveTo(int row) {
+        frame.append("\033[").append(row).append(";1H");
+    }
+
+    private static boolean contentEquals(StringBuilder a, StringBuilder b) {
+        int length = a.length();
+        if (length != b.length()) return false;
+        for (int i = 0; i < length; i++)
+            if (a.charAt(i) != b.charAt(i)) return false;
+        return true;
+    }
+}
@@ -0,0 +1,186 @@
+package neo.shell;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import neo.Fixed8;
+import neo.UInt160;
+import neo.UInt256;
+import neo.ledger.RelayResultReason;
+import neo.network.p2p.payloads.CoinReference;
+import neo.network.p2p.payloads.ContractTransaction;
+import neo.network.p2p.payloads.TransactionAttribute;
+import neo.network.p2p.payloads.TransactionOutput;
+import neo.network.p2p.payloads.Witness;
+import neo.wallets.Coin;
+import neo.wallets.Wallet;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: SweepEngine
+ * @Package neo.shell
+ * @Description: 把某一资产的UTXO合并转出，按交易大小拆分成多笔交易，并行签名后relay
+ * @date Created in 15:50 2026/10/18
+ */
+public class SweepEngine {
+
+    /**
+     * 单笔交易的处理结果回调
+     */
+    public interface Listener {
+        /**
+         * @param tx     交易
+         * @param reason relay结果，签名不完整或relay失败时为null
+         */
+        void onTransaction(ContractTransaction tx, RelayResultReason reason);
+    }
+
+    private final Wallet wallet;
+    private final TransactionSubmitter submitter;
+    private final int maxTransactionSize;
+    private final int parallelism;
+
+    public SweepEngine(Wallet wallet, TransactionSubmitter submitter, int maxTransactionSize,
+                       int parallelism) {
+        this.wallet = wallet;
+        this.submitter = submitter;
+        this.maxTransactionSize = maxTransactionSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:把资产的未花费UTXO切分成多笔不超过大小上限的交易，每笔交易的全部金额转到同一地址
+     * @param assetId 资产
+     * @param to 接收地址
+     * @param maxValue 只合并金额不超过该值的UTXO，为null时合并全部
+     * @return 未签名的交易
+     * @date:2026/10/18
+     */
+    public List<ContractTransaction> plan(UInt256 assetId, UInt160 to, Fixed8 maxValue) {
+        // 同一账户的UTXO放在一起，减少每笔交易需要的见证人
+        Map<UInt160, List<Coin>> byAccount = new LinkedHashMap<>();
+        for (Coin coin : wallet.findUnspentCoins()) {
+            if (!coin.output.assetId.equals(assetId)) continue;
+            if (maxValue != null && coin.output.value.compareTo(maxValue) > 0) continue;
+            byAccount.computeIfAbsent(coin.output.scriptHash, p -> new ArrayList<>()).add(coin);
+        }
+        List<Coin> coins = new ArrayList<>();
+        List<UInt160> owners = new ArrayList<>();
+        Map<UInt160, Integer> witnessSizes = new HashMap<>();
+        for (Map.Entry<UInt160, List<Coin>> entry : byAccount.entrySet()) {
+            witnessSizes.put(entry.getKey(), TransactionSizes.witnessSize(wallet, entry.getKey()));
+            for (Coin coin : entry.getValue()) {
+                coins.add(coin);
+                owners.add(entry.getKey());
+            }
+        }
+        List<ContractTransaction> txs = new ArrayList<>();
+        int start = 0;
+        for (int end : split(owners, witnessSizes, baseSize(assetId, to), maxTransactionSize)) {
+            List<CoinReference> inputs = new ArrayList<>(end - start);
+            Fixed8 value = Fixed8.ZERO;
+            for (Coin coin : coins.subList(start, end)) {
+                inputs.add(coin.reference);
+                value = Fixed8.add(value, coin.output.value);
+            }
+            txs.add(build(assetId, to, inputs, value));
+            start = end;
+        }
+        return txs;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:在线程池上签名，通过TransactionSubmitter relay，submitter的并发上限提供背压
+     * @param txs plan生成的交易
+     * @param listener 单笔交易的结果回调，可以为null
+     * @return 全部交易处理完成后结束，结果为成功relay的交易数
+     * @date:2026/10/18
+     */
+    public CompletableFuture<Integer> submit(List<ContractTransaction> txs, Listener listener) {
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, txs
+                .size())));
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(txs.size());
+        for (ContractTransaction tx : txs) {
+            futures.add(CompletableFuture
+                    .supplyAsync(() -> submitter.sign(wallet, tx).completed(), workers)
+                    .thenCompose(completed -> completed ? submitter.relay(tx) : CompletableFuture
+                            .completedFuture((RelayResultReason) null))
+                    .handle((reason, e) -> {
+                        if (listener != null) listener.onTransaction(tx, e == null ? reason : null);
+                        return reason == RelayResultReason.Succeed;
+                    }));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(p -> (int) futures.stream().filter(CompletableFuture::join).count())
+                .whenComplete((p, e) -> workers.shutdown());
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:按顺序把输入切分成多笔交易，每笔交易的估算大小不超过上限，单个输入已超过上限时单独成一笔
+     * @param owners 每个输入所属的账户
+     * @param witnessSizes 每个账户的见证人大小
+     * @return 每笔交易在owners中的结束位置（不含）
+     * @date:2026/10/18
+     */
+    static List<Integer> split(List<UInt160> owners, Map<UInt160, Integer> witnessSizes, int baseSize,
+                               int maxTransactionSize) {
+        List<Integer> ends = new ArrayList<>();
+        Set<UInt160> signers = new HashSet<>();
+        int inputs = 0;
+        int witnessSize = 0;
+        for (int i = 0; i < owners.size(); i++) {
+            UInt160 owner = owners.get(i);
+            int witness = witnessSizes.get(owner);
+            boolean newSigner = !signers.contains(owner);
+            int size = transactionSize(baseSize, inputs + 1, signers.size() + (newSigner ? 1 : 0),
+                    witnessSize + (newSigner ? witness : 0));
+            if (size > maxTransactionSize && inputs > 0) {
+                ends.add(i);
+                inputs = 0;
+                signers.clear();
+                witnessSize = 0;
+            }
+            inputs++;
+            if (signers.add(owner)) witnessSize += witness;
+        }
+        if (inputs > 0) ends.add(owners.size());
+        return ends;
+    }
+
+    private ContractTransaction build(UInt256 assetId, UInt160 to, List<CoinReference> inputs,
+                                      Fixed8 value) {
+        ContractTransaction tx = new ContractTransaction();
+        tx.attributes = new TransactionAttribute[0];
+        tx.inputs = inputs.toArray(new CoinReference[0]);
+        TransactionOutput output = new TransactionOutput();
+        output.assetId = assetId;
+        output.value = value;
+        output.scriptHash = to;
+        tx.outputs = new TransactionOutput[]{output};
+        return tx;
+    }
+
+    private int baseSize(UInt256 assetId, UInt160 to) {
+        ContractTransaction tx = build(assetId, to, new ArrayList<>(), Fixed8.ZERO);
+        tx.witnesses = new Witness[0];
+        // 去掉inputs和witnesses两个空数组的长度前缀
+        return tx.size() - 2;
+    }
+
+    static int transactionSize(int baseSize, int inputs, int signers, int witnessSize) {
+        return baseSize + TransactionSizes.varIntSize(inputs) + inputs * TransactionSizes
+                .COIN_REFERENCE_SIZE + TransactionSizes.varIntSize(signers) + witnessSize;
+    }
+}
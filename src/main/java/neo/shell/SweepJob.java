@@ -0,0 +1,107 @@
+package neo.shell;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import neo.Fixed8;
+import neo.UInt160;
+import neo.UInt256;
+import neo.csharp.Uint;
+import neo.ledger.Blockchain;
+import neo.log.notr.TR;
+import neo.network.p2p.payloads.ContractTransaction;
+import neo.wallets.Wallet;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: SweepJob
+ * @Package neo.shell
+ * @Description: 后台定时合并零碎UTXO，只在钱包已同步且内存池空闲时执行
+ * @date Created in 16:40 2026/10/18
+ */
+public class SweepJob {
+
+    private final Wallet wallet;
+    private final SweepEngine engine;
+    private final UInt256 assetId;
+    private final Fixed8 maxValue;
+    private final UInt160 to;
+    private final int quietPoolSize;
+    private final Runnable onSwept;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sweep-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile String status = "waiting";
+
+    /**
+     * @param wallet        钱包
+     * @param engine        合并引擎
+     * @param assetId       资产
+     * @param maxValue      只合并金额不超过该值的UTXO
+     * @param to            合并后的接收地址
+     * @param quietPoolSize 内存池交易数不超过该值时才执行
+     * @param onSwept       有交易relay成功后调用
+     */
+    public SweepJob(Wallet wallet, SweepEngine engine, UInt256 assetId, Fixed8 maxValue, UInt160 to,
+                    int quietPoolSize, Runnable onSwept) {
+        this.wallet = wallet;
+        this.engine = engine;
+        this.assetId = assetId;
+        this.maxValue = maxValue;
+        this.to = to;
+        this.quietPoolSize = quietPoolSize;
+        this.onSwept = onSwept;
+    }
+
+    public void start(int intervalSeconds) {
+        scheduler.scheduleWithFixedDelay(this::tick, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public String getStatus() {
+        return String.format("asset: %s  max value: %s  last run: %s", assetId, maxValue, status);
+    }
+
+    private void tick() {
+        if (running.get()) return;
+        try {
+            Blockchain blockchain = Blockchain.singleton();
+            if (!wallet.getWalletHeight().equals(blockchain.height().add(Uint.ONE))) {
+                status = "skipped, wallet is synchronizing";
+                return;
+            }
+            if (blockchain.getMemPool().count() > quietPoolSize) {
+                status = "skipped, memory pool is busy";
+                return;
+            }
+            List<ContractTransaction> txs = engine.plan(assetId, to, maxValue);
+            if (txs.isEmpty() || (txs.size() == 1 && txs.get(0).inputs.length < 2)) {
+                status = "nothing to sweep";
+                return;
+            }
+            running.set(true);
+            int inputs = txs.stream().mapToInt(p -> p.inputs.length).sum();
+            engine.submit(txs, null).whenComplete((succeeded, e) -> {
+                running.set(false);
+                status = e != null ? "failed: " + e.getMessage() : String.format("swept %d UTXOs, %d/%d " +
+                        "transactions relayed", inputs, succeeded, txs.size());
+                if (succeeded != null && succeeded > 0) onSwept.run();
+            });
+        } catch (Exception e) {
+            running.set(false);
+            status = "failed: " + e.getMessage();
+            TR.warn(e);
+        }
+    }
+}
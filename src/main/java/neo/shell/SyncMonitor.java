@@ -0,0 +1,151 @@
+package neo.shell;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import neo.ledger.Blockchain;
+import neo.network.p2p.payloads.Block;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: SyncMonitor
+ * @Package neo.shell
+ * @Description: 同步速度统计：按秒分桶累计持久化的区块数、交易数和字节数，按滑动窗口计算速率，
+ * 估算追上headerHeight的时间，并记录同步期间相邻区块的持久化间隔
+ * @date Created in 16:10 2026/10/18
+ */
+public class SyncMonitor {
+
+    private static final int SECONDS = 300;
+    private static final int INTERVALS = 1024;
+
+    /**
+     * 一个窗口内的速率
+     */
+    public static class Rate {
+        public final int windowSeconds;
+        public final double blocksPerSecond;
+        public final double transactionsPerSecond;
+        public final double bytesPerSecond;
+
+        Rate(int windowSeconds, double blocksPerSecond, double transactionsPerSecond, double bytesPerSecond) {
+            this.windowSeconds = windowSeconds;
+            this.blocksPerSecond = blocksPerSecond;
+            this.transactionsPerSecond = transactionsPerSecond;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+    }
+
+    private final PersistObserver observer;
+    private final Consumer<Block> listener = this::onPersist;
+    private final long startNanos = System.nanoTime();
+    /**
+     * 环形的每秒计数，stamps为桶对应的秒
+     */
+    private final long[] stamps = new long[SECONDS];
+    private final long[] blocks = new long[SECONDS];
+    private final long[] transactions = new long[SECONDS];
+    private final long[] bytes = new long[SECONDS];
+    /**
+     * 同步期间相邻两次持久化的间隔，纳秒
+     */
+    private final long[] intervals = new long[INTERVALS];
+    private int intervalCount;
+    private long lastPersistNanos;
+
+    public SyncMonitor(PersistObserver observer) {
+        this.observer = observer;
+        Arrays.fill(stamps, -1);
+        observer.addListener(listener);
+    }
+
+    public void dispose() {
+        observer.removeListener(listener);
+    }
+
+    private synchronized void onPersist(Block block) {
+        long now = System.nanoTime();
+        long second = (now - startNanos) / 1000000000L;
+        int i = (int) (second % SECONDS);
+        if (stamps[i] != second) {
+            stamps[i] = second;
+            blocks[i] = 0;
+            transactions[i] = 0;
+            bytes[i] = 0;
+        }
+        blocks[i]++;
+        if (block.transactions != null) transactions[i] += block.transactions.length;
+        bytes[i] += block.size();
+        // 已追上区块头时两次持久化的间隔是出块时间，不计入
+        if (lastPersistNanos != 0 && block.index.longValue() < Blockchain.singleton().headerHeight().longValue())
+            intervals[intervalCount++ % INTERVALS] = now - lastPersistNanos;
+        lastPersistNanos = now;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:最近windowSeconds秒的速率，启动不满一个窗口时按已运行的时间计算
+     * @param windowSeconds 不超过300
+     * @date:2026/10/18
+     */
+    public synchronized Rate getRate(int windowSeconds) {
+        long second = (System.nanoTime() - startNanos) / 1000000000L;
+        int window = (int) Math.min(Math.min(windowSeconds, SECONDS), second + 1);
+        long b = 0, t = 0, n = 0;
+        for (int i = 0; i < SECONDS; i++) {
+            if (stamps[i] > second - window && stamps[i] <= second) {
+                b += blocks[i];
+                t += transactions[i];
+                n += bytes[i];
+            }
+        }
+        return new Rate(window, (double) b / window, (double) t / window, (double) n / window);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:按最近60秒的速率估算追上headerHeight需要的秒数
+     * @return 已追上时为0，无法估算时为-1
+     * @date:2026/10/18
+     */
+    public long getSecondsToTip() {
+        long remaining = getRemainingBlocks();
+        if (remaining == 0) return 0;
+        double rate = getRate(60).blocksPerSecond;
+        return rate <= 0 ? -1 : (long) Math.ceil(remaining / rate);
+    }
+
+    public long getRemainingBlocks() {
+        Blockchain blockchain = Blockchain.singleton();
+        return Math.max(0, blockchain.headerHeight().longValue() - blockchain.height().longValue());
+    }
+
+    /**
+     * @param quantile 0到1之间
+     * @return 最近1024个持久化间隔的分位数，纳秒，没有数据时为0
+     */
+    public synchronized long getPersistIntervalPercentile(double quantile) {
+        int n = Math.min(intervalCount, INTERVALS);
+        if (n == 0) return 0;
+        long[] sorted = Arrays.copyOf(intervals, n);
+        Arrays.sort(sorted);
+        int rank = Math.max(1, (int) Math.ceil(quantile * n));
+        return sorted[Math.min(n, rank) - 1];
+    }
+
+    public synchronized int getPersistIntervalCount() {
+        return Math.min(intervalCount, INTERVALS);
+    }
+
+    /**
+     * 把秒数格式化为1h02m03s
+     */
+    public static String formatDuration(long seconds) {
+        if (seconds < 0) return "unknown";
+        long h = seconds / 3600, m = seconds / 60 % 60, s = seconds % 60;
+        if (h > 0) return String.format("%dh%02dm%02ds", h, m, s);
+        if (m > 0) return String.format("%dm%02ds", m, s);
+        return String.format("%ds", s);
+    }
+}
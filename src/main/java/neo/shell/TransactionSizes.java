@@ -0,0 +1,56 @@
+package neo.shell;
+
+import neo.UInt160;
+import neo.wallets.Wallet;
+import neo.wallets.WalletAccount;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: TransactionSizes
+ * @Package neo.shell
+ * @Description: 估算交易序列化大小的工具
+ * @date Created in 15:30 2026/10/18
+ */
+class TransactionSizes {
+
+    /**
+     * CoinReference序列化大小：UInt256 + ushort
+     */
+    static final int COIN_REFERENCE_SIZE = 34;
+    /**
+     * 单个签名的调用脚本：PUSHBYTES64 + 签名
+     */
+    private static final int SIGNATURE_INVOCATION_SIZE = 65;
+    /**
+     * 标准单签合约的验证脚本：PUSHBYTES33 + 公钥 + CHECKSIG
+     */
+    private static final int STANDARD_VERIFICATION_SIZE = 35;
+
+    private TransactionSizes() {
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:按账户合约估算见证人大小，找不到账户时按标准单签合约估算
+     * @date:2026/10/18
+     */
+    static int witnessSize(Wallet wallet, UInt160 scriptHash) {
+        WalletAccount account = wallet.getAccount(scriptHash);
+        int signatures = 1;
+        int verification = STANDARD_VERIFICATION_SIZE;
+        if (account != null && account.contract != null) {
+            signatures = Math.max(1, account.contract.parameterList.length);
+            verification = account.contract.script.length;
+        }
+        int invocation = signatures * SIGNATURE_INVOCATION_SIZE;
+        return varIntSize(invocation) + invocation + varIntSize(verification) + verification;
+    }
+
+    static int varIntSize(long value) {
+        if (value < 0xFD) return 1;
+        if (value <= 0xFFFF) return 3;
+        if (value <= 0xFFFFFFFFL) return 5;
+        return 9;
+    }
+}
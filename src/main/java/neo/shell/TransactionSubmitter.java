@@ -0,0 +1,161 @@
+package neo.shell;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import akka.actor.ActorRef;
+import akka.pattern.AskTimeoutException;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import neo.NeoSystem;
+import neo.ledger.RelayResultReason;
+import neo.network.p2p.payloads.Transaction;
+import neo.smartcontract.ContractParametersContext;
+import neo.wallets.Wallet;
+import scala.compat.java8.FutureConverters;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: TransactionSubmitter
+ * @Package neo.shell
+ * @Description: 异步签名并提交交易，限制同时等待relay结果的交易数量，并统计relay延迟
+ * @date Created in 11:10 2026/10/18
+ */
+public class TransactionSubmitter {
+
+    private final NeoSystem system;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param system      节点
+     * @param timeout     等待blockchain返回relay结果的超时时间
+     * @param maxInFlight 同时等待relay结果的交易数量上限，超过时提交方阻塞
+     */
+    public TransactionSubmitter(NeoSystem system, Duration timeout, int maxInFlight) {
+        this.system = system;
+        this.timeout = timeout;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * 同时等待relay结果的交易数量上限
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:用钱包签名交易，签名完成时写入见证人并应用到钱包
+     * @return 签名上下文，可通过completed()判断是否完成
+     * @date:2026/10/18
+     */
+    public ContractParametersContext sign(Wallet wallet, Transaction tx) {
+        ContractParametersContext context = new ContractParametersContext(tx);
+        wallet.sign(context);
+        if (context.completed()) {
+            context.verifiable.setWitnesses(context.getWitnesses());
+            apply(wallet, tx);
+        }
+        return context;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:把交易应用到钱包，钱包的内存索引通过钱包交易事件更新
+     * @date:2026/10/18
+     */
+    public void apply(Wallet wallet, Transaction tx) {
+        synchronized (wallet) {
+            wallet.applyTransaction(tx);
+        }
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:把已签名的交易交给blockchain，返回relay结果
+     * @date:2026/10/18
+     */
+    public CompletableFuture<RelayResultReason> relay(Transaction tx) {
+        inFlight.acquireUninterruptibly();
+        submitted.increment();
+        long start = System.nanoTime();
+        return FutureConverters.toJava(Patterns.ask(system.blockchain, tx, Timeout.create(timeout)))
+                .toCompletableFuture()
+                .thenApply(p -> (RelayResultReason) p)
+                .whenComplete((reason, e) -> {
+                    inFlight.release();
+                    long latency = System.nanoTime() - start;
+                    totalLatency.add(latency);
+                    maxLatency.accumulate(latency);
+                    if (reason == RelayResultReason.Succeed) {
+                        succeeded.increment();
+                        if (system.consensus != null) system.consensus.tell(tx, ActorRef.noSender());
+                    } else if (isTimeout(e)) {
+                        timedOut.increment();
+                    } else {
+                        rejected.increment();
+                    }
+                });
+    }
+
+    /**
+     * relay是否因等待超时失败，此时交易可能已经进入内存池
+     */
+    public static boolean isTimeout(Throwable e) {
+        for (; e != null; e = e.getCause())
+            if (e instanceof AskTimeoutException || e instanceof TimeoutException) return true;
+        return false;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:签名并提交，签名不完整时返回的future以IncompleteSignatureException结束
+     * @date:2026/10/18
+     */
+    public CompletableFuture<RelayResultReason> submit(Wallet wallet, Transaction tx) {
+        ContractParametersContext context;
+        try {
+            context = sign(wallet, tx);
+        } catch (Exception e) {
+            CompletableFuture<RelayResultReason> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        if (!context.completed()) {
+            CompletableFuture<RelayResultReason> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IncompleteSignatureException(context));
+            return failed;
+        }
+        return relay(tx);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:relay统计：提交数、成功数、拒绝数、超时数、平均和最大延迟
+     * @date:2026/10/18
+     */
+    public String getMetrics() {
+        long count = submitted.sum();
+        long completed = succeeded.sum() + rejected.sum() + timedOut.sum();
+        return String.format("submitted: %d  succeeded: %d  rejected: %d  timeout: %d  in-flight: " +
+                        "%d  latency avg: %d ms  max: %d ms", count, succeeded.sum(), rejected.sum(),
+                timedOut.sum(), count - completed, completed == 0 ? 0 : totalLatency.sum() / completed
+                        / 1000000, maxLatency.get() / 1000000);
+    }
+}
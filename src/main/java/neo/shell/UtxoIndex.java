@@ -0,0 +1,454 @@
+package neo.shell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import neo.Fixed8;
+import neo.UInt160;
+import neo.UInt256;
+import neo.csharp.Ushort;
+import neo.ledger.Blockchain;
+import neo.network.p2p.payloads.Block;
+import neo.network.p2p.payloads.CoinReference;
+import neo.network.p2p.payloads.ContractTransaction;
+import neo.network.p2p.payloads.Transaction;
+import neo.network.p2p.payloads.TransactionAttribute;
+import neo.network.p2p.payloads.TransactionOutput;
+import neo.wallets.Coin;
+import neo.wallets.Wallet;
+import neo.wallets.WalletAccount;
+import neo.wallets.WalletTransactionEventArgs;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: UtxoIndex
+ * @Package neo.shell
+ * @Description: 钱包已确认未花费UTXO的内存索引，按资产分组，金额按升序存放在long数组中，随钱包交易事件增量维护
+ * @date Created in 14:30 2026/10/18
+ */
+public class UtxoIndex {
+
+    /**
+     * 选币结果
+     */
+    public static class Selection {
+        public final CoinReference[] references;
+        public final Fixed8 value;
+
+        Selection(CoinReference[] references, Fixed8 value) {
+            this.references = references;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 单个资产的UTXO，values升序，references按下标对应。新加入的币先追加到added，移除的币先记在removed，
+     * 查询前由flush一次归并，一个区块的多笔交易只需要一次O(n + k log k)的归并，而不是每个币一次O(n)的移动
+     */
+    static class AssetCoins {
+        long[] values = new long[0];
+        CoinReference[] references = new CoinReference[0];
+        int size;
+        long total;
+        private long[] addedValues = new long[16];
+        private CoinReference[] addedReferences = new CoinReference[16];
+        private int added;
+        private final Set<CoinReference> removed = new HashSet<>();
+
+        /**
+         * 加入一个币，调用方保证它不在集合中
+         */
+        void add(CoinReference reference, long value) {
+            total += value;
+            // 先移除后又加回：仍在数组中，取消移除即可
+            if (removed.remove(reference)) return;
+            if (added == addedValues.length) {
+                addedValues = Arrays.copyOf(addedValues, added * 2);
+                addedReferences = Arrays.copyOf(addedReferences, added * 2);
+            }
+            addedValues[added] = value;
+            addedReferences[added++] = reference;
+        }
+
+        /**
+         * 移除一个币，调用方保证它在集合中
+         */
+        void remove(CoinReference reference, long value) {
+            total -= value;
+            removed.add(reference);
+        }
+
+        /**
+         * @Author:doubi.liu
+         * @description:把待加入的币排序后与values归并，同时去掉待移除的币
+         * @date:2026/10/18
+         */
+        void flush() {
+            if (added == 0 && removed.isEmpty()) return;
+            Integer[] order = new Integer[added];
+            for (int i = 0; i < added; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparingLong(i -> addedValues[i]));
+            int capacity = size + added - removed.size();
+            long[] newValues = new long[capacity];
+            CoinReference[] newReferences = new CoinReference[capacity];
+            int n = 0;
+            for (int i = 0, j = 0; i < size || j < added; ) {
+                long value;
+                CoinReference reference;
+                if (j == added || i < size && values[i] <= addedValues[order[j]]) {
+                    value = values[i];
+                    reference = references[i++];
+                } else {
+                    value = addedValues[order[j]];
+                    reference = addedReferences[order[j++]];
+                }
+                if (!removed.isEmpty() && removed.remove(reference)) continue;
+                newValues[n] = value;
+                newReferences[n++] = reference;
+            }
+            values = newValues;
+            references = newReferences;
+            size = n;
+            Arrays.fill(addedReferences, 0, added, null);
+            added = 0;
+            removed.clear();
+        }
+
+        /**
+         * 第一个金额不小于value的下标，需要先flush
+         */
+        int lowerBound(long value) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < value) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        /**
+         * @Author:doubi.liu
+         * @description:与Wallet.findUnspentCoins(assetId, amount, from)相同的选币规则：从大到小取不超过剩余金额的币，
+         * 最后补一个不小于剩余金额的最小的币。复杂度为O(选中个数 + log n)，需要先flush
+         * @return 余额不足时返回null
+         * @date:2026/10/18
+         */
+        Selection select(long amount) {
+            long remaining = amount;
+            if (total < remaining) return null;
+            if (total == remaining) return new Selection(Arrays.copyOf(references, size), new Fixed8(total));
+            List<CoinReference> selected = new ArrayList<>();
+            long value = 0;
+            int i = size - 1;
+            while (values[i] <= remaining) {
+                selected.add(references[i]);
+                value += values[i];
+                remaining -= values[i];
+                i--;
+            }
+            if (remaining > 0) {
+                int j = lowerBound(remaining);
+                selected.add(references[j]);
+                value += values[j];
+            }
+            return new Selection(selected.toArray(new CoinReference[0]), new Fixed8(value));
+        }
+    }
+
+    private final Wallet wallet;
+    private final WalletObserver walletObserver;
+    private final PersistObserver persistObserver;
+    /**
+     * 钱包交易事件先放入队列，查询时按顺序应用，不在触发事件的线程上等锁
+     */
+    private final Queue<WalletTransactionEventArgs> events = new ConcurrentLinkedQueue<>();
+    private final Consumer<WalletTransactionEventArgs> listener = events::add;
+    private final Consumer<Block> persistListener = p -> drain();
+
+    private final Map<UInt256, AssetCoins> assets = new HashMap<>();
+    private final Map<CoinReference, TransactionOutput> outputs = new HashMap<>();
+    /**
+     * 钱包的全部账户和其中可以花费的账户
+     */
+    private Set<UInt160> accounts = new HashSet<>();
+    private Set<UInt160> spendable = new HashSet<>();
+    private boolean stale = true;
+
+    /**
+     * @param walletObserver  钱包交易事件
+     * @param persistObserver 区块持久化时应用已排队的事件，长时间没有查询时队列不会一直增长
+     */
+    public UtxoIndex(WalletObserver walletObserver, PersistObserver persistObserver) {
+        this.wallet = walletObserver.getWallet();
+        this.walletObserver = walletObserver;
+        this.persistObserver = persistObserver;
+        walletObserver.addListener(listener);
+        persistObserver.addListener(persistListener);
+    }
+
+    public void dispose() {
+        walletObserver.removeListener(listener);
+        persistObserver.removeListener(persistListener);
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    /**
+     * 钱包被重建，下次查询时重新加载
+     */
+    public synchronized void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:资产的UTXO总额
+     * @date:2026/10/18
+     */
+    public synchronized Fixed8 total(UInt256 assetId) {
+        AssetCoins coins = get(assetId);
+        return coins == null ? Fixed8.ZERO : new Fixed8(coins.total);
+    }
+
+    public synchronized int count(UInt256 assetId) {
+        return count(assetId, null);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:金额不小于min的UTXO个数，二分查找，不遍历币
+     * @param assetId 资产，为null时统计全部资产
+     * @param min 最小金额，为null时不限制
+     * @date:2026/10/18
+     */
+    public synchronized int count(UInt256 assetId, Fixed8 min) {
+        int count = 0;
+        for (AssetCoins coins : groups(assetId)) {
+            count += min == null ? coins.size : coins.size - coins.lowerBound(min.getData());
+        }
+        return count;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:按金额从大到小分页，指定资产时复杂度为O(limit)，不指定资产时按资产归并
+     * @param assetId 资产，为null时包含全部资产
+     * @param min 最小金额，为null时不限制
+     * @param offset 跳过的个数
+     * @param limit 最多返回的个数
+     * @param consumer 逐个接收结果
+     * @date:2026/10/18
+     */
+    public synchronized void page(UInt256 assetId, Fixed8 min, int offset, int limit, Consumer<Coin>
+            consumer) {
+        List<AssetCoins> groups = groups(assetId);
+        long minValue = min == null ? Long.MIN_VALUE : min.getData();
+        int[] positions = new int[groups.size()];
+        int[] ends = new int[groups.size()];
+        for (int i = 0; i < groups.size(); i++) {
+            positions[i] = groups.get(i).size - 1;
+            ends[i] = min == null ? 0 : groups.get(i).lowerBound(minValue);
+        }
+        // 只有一个资产时直接定位到offset，不需要逐个跳过
+        if (groups.size() == 1) positions[0] = Math.max(ends[0] - 1, positions[0] - offset);
+        int skipped = groups.size() == 1 ? offset : 0;
+        for (int taken = 0; taken < limit; ) {
+            int best = -1;
+            for (int i = 0; i < groups.size(); i++) {
+                if (positions[i] < ends[i]) continue;
+                if (best < 0 || groups.get(i).values[positions[i]] > groups.get(best)
+                        .values[positions[best]])
+                    best = i;
+            }
+            if (best < 0) return;
+            CoinReference reference = groups.get(best).references[positions[best]--];
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            Coin coin = new Coin();
+            coin.reference = reference;
+            coin.output = outputs.get(reference);
+            consumer.accept(coin);
+            taken++;
+        }
+    }
+
+    private List<AssetCoins> groups(UInt256 assetId) {
+        ensureFresh();
+        List<AssetCoins> groups = new ArrayList<>();
+        if (assetId == null) {
+            groups.addAll(assets.values());
+        } else if (assets.containsKey(assetId)) {
+            groups.add(assets.get(assetId));
+        }
+        return groups;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:按Wallet.findUnspentCoins(assetId, amount, from)的规则选币
+     * @return 余额不足时返回null
+     * @date:2026/10/18
+     */
+    public synchronized Selection select(UInt256 assetId, Fixed8 amount) {
+        AssetCoins coins = get(assetId);
+        return coins == null ? null : coins.select(amount.getData());
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:用索引选币构造全局资产的转账交易，找零和手续费的处理与Wallet.makeTransaction一致
+     * @param outputs 转账输出，只能是全局资产
+     * @param changeAddress 找零地址
+     * @param fee 手续费，以GAS支付
+     * @return 余额不足时返回null
+     * @date:2026/10/18
+     */
+    public synchronized ContractTransaction makeTransaction(List<TransactionOutput> outputs, UInt160
+            changeAddress, Fixed8 fee) {
+        ensureFresh();
+        return makeTransaction(assets, outputs, changeAddress, fee);
+    }
+
+    /**
+     * 从给定的币中选币构造交易，BatchPayout用它在本地扣除进行中交易占用的币后选币。各资产需要先flush
+     */
+    static ContractTransaction makeTransaction(Map<UInt256, AssetCoins> assets, List<TransactionOutput>
+            outputs, UInt160 changeAddress, Fixed8 fee) {
+        Map<UInt256, Fixed8> payTotal = new HashMap<>();
+        for (TransactionOutput output : outputs)
+            payTotal.merge(output.assetId, output.value, Fixed8::add);
+        if (fee.compareTo(Fixed8.ZERO) > 0)
+            payTotal.merge(Blockchain.UtilityToken.hash(), fee, Fixed8::add);
+        List<CoinReference> inputs = new ArrayList<>();
+        List<TransactionOutput> txOutputs = new ArrayList<>(outputs);
+        for (Map.Entry<UInt256, Fixed8> entry : payTotal.entrySet()) {
+            AssetCoins coins = assets.get(entry.getKey());
+            Selection selection = coins == null ? null : coins.select(entry.getValue().getData());
+            if (selection == null) return null;
+            for (CoinReference reference : selection.references) inputs.add(reference);
+            if (selection.value.compareTo(entry.getValue()) > 0) {
+                TransactionOutput change = new TransactionOutput();
+                change.assetId = entry.getKey();
+                change.value = Fixed8.subtract(selection.value, entry.getValue());
+                change.scriptHash = changeAddress;
+                txOutputs.add(change);
+            }
+        }
+        ContractTransaction tx = new ContractTransaction();
+        tx.attributes = new TransactionAttribute[0];
+        tx.inputs = inputs.toArray(new CoinReference[0]);
+        tx.outputs = txOutputs.toArray(new TransactionOutput[0]);
+        return tx;
+    }
+
+    private AssetCoins get(UInt256 assetId) {
+        ensureFresh();
+        return assets.get(assetId);
+    }
+
+    /**
+     * 按顺序应用排队的事件，需要时重新加载，再应用读币期间发生的事件，最后归并各资产待加入和待移除的币
+     */
+    private void ensureFresh() {
+        do {
+            if (stale) rebuild();
+            apply();
+        } while (stale);
+        for (AssetCoins coins : assets.values()) coins.flush();
+    }
+
+    private synchronized void drain() {
+        apply();
+        // 下次查询时重新加载，排队的事件已不需要
+        if (stale) events.clear();
+    }
+
+    private void apply() {
+        for (WalletTransactionEventArgs e; !stale && (e = events.poll()) != null; ) onWalletTransaction(e);
+    }
+
+    private void rebuild() {
+        assets.clear();
+        outputs.clear();
+        // 之前的事件已包含在读到的币中。读币期间发生的事件会在重建后按顺序再应用一次，每个币最终取最后一个事件的结果，
+        // 与钱包一致
+        events.clear();
+        Set<UInt160> scriptHashes = new HashSet<>();
+        Set<UInt160> signable = new HashSet<>();
+        for (WalletAccount account : wallet.getAccounts()) {
+            scriptHashes.add(account.scriptHash);
+            if (!account.lock && !account.watchOnly()) signable.add(account.scriptHash);
+        }
+        accounts = scriptHashes;
+        spendable = signable;
+        Map<UInt256, List<Coin>> byAsset = new HashMap<>();
+        for (Coin coin : wallet.findUnspentCoins())
+            byAsset.computeIfAbsent(coin.output.assetId, p -> new ArrayList<>()).add(coin);
+        for (Map.Entry<UInt256, List<Coin>> entry : byAsset.entrySet()) {
+            List<Coin> coins = entry.getValue();
+            coins.sort((x, y) -> x.output.value.compareTo(y.output.value));
+            AssetCoins assetCoins = new AssetCoins();
+            assetCoins.values = new long[coins.size()];
+            assetCoins.references = new CoinReference[coins.size()];
+            for (Coin coin : coins) {
+                long value = coin.output.value.getData();
+                assetCoins.values[assetCoins.size] = value;
+                assetCoins.references[assetCoins.size++] = coin.reference;
+                assetCoins.total += value;
+                outputs.put(coin.reference, coin.output);
+            }
+            assets.put(entry.getKey(), assetCoins);
+        }
+        stale = false;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:钱包交易事件：输入变为已花费；上链的交易把转给可花费账户的输出加入索引，未上链的输出不能用于选币。
+     * 包括RPC和插件直接应用到钱包的交易，出现未知账户时重新加载
+     * @date:2026/10/18
+     */
+    private void onWalletTransaction(WalletTransactionEventArgs e) {
+        for (UInt160 account : e.relatedAccounts) {
+            if (!accounts.contains(account)) {
+                stale = true;
+                return;
+            }
+        }
+        Transaction tx = e.transaction;
+        for (CoinReference input : tx.inputs) remove(input);
+        if (e.height == null) return;
+        for (int i = 0; i < tx.outputs.length; i++) {
+            TransactionOutput output = tx.outputs[i];
+            if (!spendable.contains(output.scriptHash)) continue;
+            CoinReference reference = new CoinReference();
+            reference.prevHash = tx.hash();
+            reference.prevIndex = new Ushort(i);
+            if (outputs.putIfAbsent(reference, output) != null) continue;
+            assets.computeIfAbsent(output.assetId, p -> new AssetCoins()).add(reference, output.value
+                    .getData());
+        }
+    }
+
+    private void remove(CoinReference reference) {
+        TransactionOutput output = outputs.remove(reference);
+        if (output == null) return;
+        AssetCoins coins = assets.get(output.assetId);
+        if (coins != null) coins.remove(reference, output.value.getData());
+    }
+}
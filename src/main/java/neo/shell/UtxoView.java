@@ -0,0 +1,181 @@
+package neo.shell;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import neo.Fixed8;
+import neo.UInt256;
+import neo.ledger.Blockchain;
+import neo.ledger.TransactionState;
+import neo.persistence.Snapshot;
+import neo.wallets.Coin;
+import neo.wallets.Wallet;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: UtxoView
+ * @Package neo.shell
+ * @Description: 分页显示UTXO，逐个读取钱包中的币，内存占用只与limit有关
+ * @date Created in 16:20 2026/10/18
+ */
+public class UtxoView {
+
+    public enum Sort {
+        /**
+         * 钱包返回的顺序
+         */
+        NONE,
+        /**
+         * 金额从大到小
+         */
+        VALUE,
+        /**
+         * 所在区块高度从低到高，即最早的币在前
+         */
+        HEIGHT
+    }
+
+    /**
+     * 带所在区块高度的币
+     */
+    public static class Entry {
+        public final Coin coin;
+        public final long height;
+        /**
+         * 在钱包返回顺序中的位置，高度相同时按它排序，使游标唯一
+         */
+        private final long sequence;
+
+        Entry(Coin coin, long height) {
+            this(coin, height, -1);
+        }
+
+        Entry(Coin coin, long height, long sequence) {
+            this.coin = coin;
+            this.height = height;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> BY_HEIGHT = Comparator.comparingLong((Entry e) -> e.height)
+            .thenComparingLong(e -> e.sequence);
+
+    private final Wallet wallet;
+    private final UtxoIndex index;
+
+    public UtxoView(Wallet wallet, UtxoIndex index) {
+        this.wallet = wallet;
+        this.index = index;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:满足条件的UTXO个数，由索引计算
+     * @date:2026/10/18
+     */
+    public int count(UInt256 assetId, Fixed8 min) {
+        return index.count(assetId, min);
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:输出一页UTXO
+     * @param assetId 资产，为null时包含全部资产
+     * @param min 最小金额，为null时不限制
+     * @param sort 排序方式
+     * @param offset 跳过的个数
+     * @param limit 最多输出的个数
+     * @param consumer 逐个接收结果，只有按高度排序时height有效，其它情况为-1
+     * @date:2026/10/18
+     */
+    public void page(UInt256 assetId, Fixed8 min, Sort sort, int offset, int limit,
+                     Consumer<Entry> consumer) {
+        switch (sort) {
+            case VALUE:
+                index.page(assetId, min, offset, limit, p -> consumer.accept(new Entry(p, -1)));
+                break;
+            case HEIGHT:
+                pageByHeight(assetId, min, offset, limit, consumer);
+                break;
+            default:
+                int skipped = 0, taken = 0;
+                for (Coin coin : wallet.findUnspentCoins()) {
+                    if (!matches(coin, assetId, min)) continue;
+                    if (skipped < offset) {
+                        skipped++;
+                        continue;
+                    }
+                    consumer.accept(new Entry(coin, -1));
+                    if (++taken >= limit) break;
+                }
+                break;
+        }
+    }
+
+    /**
+     * 按高度跳过offset个币时每一轮最多保留的个数
+     */
+    private static final int SKIP_CHUNK = 1024;
+
+    /**
+     * 按(高度, 在钱包中的顺序)排序，用游标分轮读取：每一轮只用大小为本轮个数的大顶堆保留游标之后最低的币，
+     * 跳过offset时每轮最多SKIP_CHUNK个，内存占用只与limit有关，与offset无关
+     */
+    private void pageByHeight(UInt256 assetId, Fixed8 min, int offset, int limit,
+                              Consumer<Entry> consumer) {
+        if (limit <= 0) return;
+        int total = count(assetId, min);
+        Snapshot snapshot = Blockchain.singleton().getSnapshot();
+        try {
+            Entry cursor = null;
+            int remaining = offset;
+            while (remaining > 0) {
+                Deque<Entry> skipped = nextByHeight(snapshot, assetId, min, cursor, Math.min(remaining,
+                        SKIP_CHUNK), total);
+                if (skipped.isEmpty()) return;
+                remaining -= skipped.size();
+                cursor = skipped.getLast();
+            }
+            nextByHeight(snapshot, assetId, min, cursor, limit, total).forEach(consumer);
+        } finally {
+            snapshot.dispose();
+        }
+    }
+
+    /**
+     * 读取游标之后按高度排序的至多n个币，堆按需增长，初始容量不超过满足条件的币数
+     */
+    private Deque<Entry> nextByHeight(Snapshot snapshot, UInt256 assetId, Fixed8 min, Entry cursor, int n,
+                                      int total) {
+        PriorityQueue<Entry> heap = new PriorityQueue<>(Math.max(1, Math.min(n, total)), BY_HEIGHT.reversed());
+        long sequence = 0;
+        for (Coin coin : wallet.findUnspentCoins()) {
+            if (!matches(coin, assetId, min)) continue;
+            long seq = sequence++;
+            TransactionState state = snapshot.getTransactions().tryGet(coin.reference.prevHash);
+            long height = state == null ? Long.MAX_VALUE : state.blockIndex.longValue();
+            if (cursor != null && (height < cursor.height || height == cursor.height && seq <= cursor
+                    .sequence))
+                continue;
+            Entry entry = new Entry(coin, height, seq);
+            if (heap.size() < n) {
+                heap.add(entry);
+            } else if (BY_HEIGHT.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        Deque<Entry> ordered = new ArrayDeque<>(heap.size());
+        while (heap.size() > 0) ordered.push(heap.poll());
+        return ordered;
+    }
+
+    private static boolean matches(Coin coin, UInt256 assetId, Fixed8 min) {
+        if (assetId != null && !coin.output.assetId.equals(assetId)) return false;
+        return min == null || coin.output.value.compareTo(min) >= 0;
+    }
+}
@@ -0,0 +1,62 @@
+package neo.shell;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import neo.log.notr.TR;
+import neo.smartcontract.EventHandler;
+import neo.wallets.Wallet;
+import neo.wallets.WalletTransactionEventArgs;
+
+/**
+ * @author doubi.liu
+ * @version V1.0
+ * @Title: WalletObserver
+ * @Package neo.shell
+ * @Description: 订阅钱包的交易事件并分发给注册的监听者，包括控制台、RPC和插件调用applyTransaction，以及索引器处理区块
+ * @date Created in 10:20 2026/10/18
+ */
+public class WalletObserver {
+
+    private final CopyOnWriteArrayList<Consumer<WalletTransactionEventArgs>> listeners = new
+            CopyOnWriteArrayList<>();
+    private final Wallet wallet;
+    private final EventHandler.Listener<WalletTransactionEventArgs> handler = (sender, e) -> publish(e);
+
+    public WalletObserver(Wallet wallet) {
+        this.wallet = wallet;
+        wallet.getWalletTransaction().addListener(handler);
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    /**
+     * @Author:doubi.liu
+     * @description:注册监听者。监听者在触发事件的线程上被调用，索引器此时持有自身的锁，读取钱包也需要这把锁，
+     * 所以监听者只能把事件放入队列，不能等待读取钱包的锁。height为null表示交易刚应用到钱包、尚未上链
+     * @date:2026/10/18
+     */
+    public void addListener(Consumer<WalletTransactionEventArgs> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<WalletTransactionEventArgs> listener) {
+        listeners.remove(listener);
+    }
+
+    public void dispose() {
+        wallet.getWalletTransaction().removeListener(handler);
+    }
+
+    private void publish(WalletTransactionEventArgs e) {
+        for (Consumer<WalletTransactionEventArgs> listener : listeners) {
+            try {
+                listener.accept(e);
+            } catch (Exception ex) {
+                TR.warn(ex);
+            }
+        }
+    }
+}
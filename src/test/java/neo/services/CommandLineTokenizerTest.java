@@ -0,0 +1,47 @@
+package neo.services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import neo.exception.FormatException;
+
+public class CommandLineTokenizerTest {
+
+    @Test
+    public void tokenize() {
+        Assert.assertArrayEquals(new String[]{"send", "neo", "AXx", "10"},
+                CommandLineTokenizer.tokenize("send neo AXx 10"));
+        Assert.assertArrayEquals(new String[]{"show", "pool"},
+                CommandLineTokenizer.tokenize("  show   pool  "));
+        Assert.assertArrayEquals(new String[0], CommandLineTokenizer.tokenize("   "));
+    }
+
+    @Test
+    public void tokenizeQuoted() {
+        Assert.assertArrayEquals(new String[]{"open", "wallet", "my wallet.json"},
+                CommandLineTokenizer.tokenize("open wallet \"my wallet.json\""));
+        Assert.assertArrayEquals(new String[]{"relay", "{\"a\":1}"},
+                CommandLineTokenizer.tokenize("relay \"{\\\"a\\\":1}\""));
+        Assert.assertArrayEquals(new String[]{"", "b"}, CommandLineTokenizer.tokenize("\"\" b"));
+        Assert.assertArrayEquals(new String[]{"a\"b"}, CommandLineTokenizer.tokenize("a\"b"));
+    }
+
+    @Test
+    public void tokenizeEscape() {
+        Assert.assertArrayEquals(new String[]{"a\nb\rc\td\\e"},
+                CommandLineTokenizer.tokenize("\"a\\nb\\rc\\td\\\\e\""));
+        Assert.assertArrayEquals(new String[]{"A\u00ff"}, CommandLineTokenizer.tokenize("\"\\x41\\xfF\""));
+        // 不带引号的参数不处理转义
+        Assert.assertArrayEquals(new String[]{"a\\nb"}, CommandLineTokenizer.tokenize("a\\nb"));
+    }
+
+    @Test(expected = FormatException.class)
+    public void tokenizeUnterminated() {
+        CommandLineTokenizer.tokenize("sign \"abc");
+    }
+
+    @Test(expected = FormatException.class)
+    public void tokenizeBadEscape() {
+        CommandLineTokenizer.tokenize("\"\\x4g\"");
+    }
+}
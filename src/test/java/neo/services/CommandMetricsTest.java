@@ -0,0 +1,66 @@
+package neo.services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommandMetricsTest {
+
+    @Test
+    public void bucketLinear() {
+        for (int i = 0; i < 16; i++) {
+            Assert.assertEquals(i, CommandMetrics.bucket(i));
+            Assert.assertEquals(i, CommandMetrics.bucketUpperBound(i));
+        }
+        Assert.assertEquals(0, CommandMetrics.bucket(-5));
+    }
+
+    @Test
+    public void bucketBoundaries() {
+        // 16到31每2微秒一个桶
+        Assert.assertEquals(16, CommandMetrics.bucket(16));
+        Assert.assertEquals(16, CommandMetrics.bucket(17));
+        Assert.assertEquals(17, CommandMetrics.bucket(18));
+        Assert.assertEquals(23, CommandMetrics.bucket(31));
+        Assert.assertEquals(24, CommandMetrics.bucket(32));
+        Assert.assertEquals(17, CommandMetrics.bucketUpperBound(16));
+        Assert.assertEquals(31, CommandMetrics.bucketUpperBound(23));
+        Assert.assertEquals(35, CommandMetrics.bucketUpperBound(24));
+        Assert.assertEquals(Long.MAX_VALUE, CommandMetrics.bucketUpperBound(CommandMetrics.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void bucketContainsValue() {
+        for (long v = 0; v < 1 << 20; v += 1 + v / 64) check(v);
+        for (int shift = 20; shift < 63; shift++) {
+            check((1L << shift) - 1);
+            check(1L << shift);
+            check((1L << shift) + 1);
+        }
+        check(Long.MAX_VALUE);
+    }
+
+    private static void check(long v) {
+        int bucket = CommandMetrics.bucket(v);
+        long upper = CommandMetrics.bucketUpperBound(bucket);
+        Assert.assertTrue(String.format("%d > %d", v, upper), v <= upper);
+        if (bucket > 0) Assert.assertTrue(String.format("%d in %d", v, bucket - 1),
+                v > CommandMetrics.bucketUpperBound(bucket - 1));
+        // 上界相对误差不超过12.5%
+        Assert.assertTrue(String.format("%d -> %d", v, upper), upper - v <= v / 8);
+    }
+
+    @Test
+    public void percentile() {
+        CommandMetrics.Stats stats = new CommandMetrics.Stats("test");
+        Assert.assertEquals(0, stats.getPercentileMicros(0.5));
+        for (long v = 1; v <= 1000; v++) stats.record(v, 0, false);
+        long p50 = stats.getPercentileMicros(0.5);
+        Assert.assertTrue(String.valueOf(p50), p50 >= 500 && p50 <= 500 + 500 / 8);
+        long p99 = stats.getPercentileMicros(0.99);
+        Assert.assertTrue(String.valueOf(p99), p99 >= 990 && p99 <= 1000);
+        Assert.assertEquals(1000, stats.getPercentileMicros(1));
+        Assert.assertEquals(1, stats.getPercentileMicros(0));
+        Assert.assertEquals(1000, stats.getMaxMicros());
+        Assert.assertEquals(500, stats.getMeanMicros());
+    }
+}
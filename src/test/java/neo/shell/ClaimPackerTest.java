@@ -0,0 +1,34 @@
+package neo.shell;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClaimPackerTest {
+
+    @Test
+    public void compareValuePerClaim() {
+        Assert.assertEquals(0, ClaimPacker.compareValuePerClaim(10, 2, 5, 1));
+        Assert.assertTrue(ClaimPacker.compareValuePerClaim(11, 2, 5, 1) > 0);
+        Assert.assertTrue(ClaimPacker.compareValuePerClaim(9, 2, 5, 1) < 0);
+        // 1/3和2/5除法取整后相同
+        Assert.assertTrue(ClaimPacker.compareValuePerClaim(1, 3, 2, 5) < 0);
+        Assert.assertEquals(0, ClaimPacker.compareValuePerClaim(0, 7, 0, 1));
+    }
+
+    @Test
+    public void compareValuePerClaimOverflow() {
+        long big = Long.MAX_VALUE / 2;
+        Assert.assertTrue(ClaimPacker.compareValuePerClaim(big, 3, big - 1, 3) > 0);
+        Assert.assertEquals(0, ClaimPacker.compareValuePerClaim(big, 1000, big, 1000));
+        Assert.assertTrue(ClaimPacker.compareValuePerClaim(Long.MAX_VALUE, 1000, Long.MAX_VALUE - 1,
+                999) < 0);
+    }
+
+    @Test
+    public void transactionSize() {
+        Assert.assertEquals(100 + 1 + 34 + 1 + 101, ClaimPacker.transactionSize(100, 1, 1, 101));
+        // 超过252个claim时长度前缀变为3字节
+        Assert.assertEquals(100 + 1 + 252 * 34 + 1, ClaimPacker.transactionSize(100, 252, 0, 0));
+        Assert.assertEquals(100 + 3 + 253 * 34 + 1, ClaimPacker.transactionSize(100, 253, 0, 0));
+    }
+}
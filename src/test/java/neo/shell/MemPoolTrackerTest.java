@@ -0,0 +1,104 @@
+package neo.shell;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class MemPoolTrackerTest {
+
+    @Test
+    public void feeBucket() {
+        Assert.assertEquals(0, MemPoolTracker.feeBucket(-1));
+        Assert.assertEquals(0, MemPoolTracker.feeBucket(0));
+        Assert.assertEquals(1, MemPoolTracker.feeBucket(1));
+        Assert.assertEquals(2, MemPoolTracker.feeBucket(2));
+        Assert.assertEquals(2, MemPoolTracker.feeBucket(3));
+        Assert.assertEquals(3, MemPoolTracker.feeBucket(4));
+        Assert.assertEquals(11, MemPoolTracker.feeBucket(1024));
+        Assert.assertEquals(MemPoolTracker.FEE_BUCKETS - 1, MemPoolTracker.feeBucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void sizeBucket() {
+        Assert.assertEquals(0, MemPoolTracker.sizeBucket(0));
+        Assert.assertEquals(0, MemPoolTracker.sizeBucket(255));
+        Assert.assertEquals(1, MemPoolTracker.sizeBucket(256));
+        Assert.assertEquals(1, MemPoolTracker.sizeBucket(511));
+        Assert.assertEquals(2, MemPoolTracker.sizeBucket(512));
+        Assert.assertEquals(MemPoolTracker.SIZE_BUCKETS - 1, MemPoolTracker.sizeBucket(102400));
+        Assert.assertEquals(MemPoolTracker.SIZE_BUCKETS - 1, MemPoolTracker.sizeBucket(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void trackedBucket() {
+        Assert.assertEquals(0, MemPoolTracker.trackedBucket(0));
+        Assert.assertEquals(0, MemPoolTracker.trackedBucket(59));
+        Assert.assertEquals(1, MemPoolTracker.trackedBucket(60));
+        Assert.assertEquals(3, MemPoolTracker.trackedBucket(3599));
+        Assert.assertEquals(4, MemPoolTracker.trackedBucket(3600));
+    }
+
+    private static List<MemPoolTracker.Entry> entries() {
+        Random random = new Random(1);
+        List<MemPoolTracker.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String type = i % 3 == 0 ? "ContractTransaction" : "InvocationTransaction";
+            entries.add(new MemPoolTracker.Entry(null, type, 100 + random.nextInt(10000), random.nextInt
+                    (1000), random.nextInt(1000000)));
+        }
+        return entries;
+    }
+
+    @Test
+    public void topByFee() {
+        List<MemPoolTracker.Entry> entries = entries();
+        List<MemPoolTracker.Entry> top = MemPoolTracker.top(entries, null, MemPoolTracker.Sort.FEE, 10);
+        List<Long> expected = new ArrayList<>();
+        for (MemPoolTracker.Entry entry : entries) expected.add(entry.feePerByte);
+        expected.sort(Collections.reverseOrder());
+        List<Long> actual = new ArrayList<>();
+        for (MemPoolTracker.Entry entry : top) actual.add(entry.feePerByte);
+        Assert.assertEquals(expected.subList(0, 10), actual);
+    }
+
+    @Test
+    public void topBySize() {
+        List<MemPoolTracker.Entry> entries = entries();
+        List<MemPoolTracker.Entry> top = MemPoolTracker.top(entries, null, MemPoolTracker.Sort.SIZE, 7);
+        List<Integer> expected = new ArrayList<>();
+        for (MemPoolTracker.Entry entry : entries) expected.add(entry.size);
+        expected.sort(Collections.reverseOrder());
+        List<Integer> actual = new ArrayList<>();
+        for (MemPoolTracker.Entry entry : top) actual.add(entry.size);
+        Assert.assertEquals(expected.subList(0, 7), actual);
+    }
+
+    @Test
+    public void topByTrackedWithType() {
+        List<MemPoolTracker.Entry> entries = entries();
+        List<MemPoolTracker.Entry> top = MemPoolTracker.top(entries, "contract", MemPoolTracker.Sort.TRACKED, 5);
+        List<Long> expected = new ArrayList<>();
+        for (MemPoolTracker.Entry entry : entries)
+            if (entry.type.equals("ContractTransaction")) expected.add(entry.trackedSinceMillis);
+        Collections.sort(expected);
+        List<Long> actual = new ArrayList<>();
+        for (MemPoolTracker.Entry entry : top) {
+            Assert.assertEquals("ContractTransaction", entry.type);
+            actual.add(entry.trackedSinceMillis);
+        }
+        Assert.assertEquals(expected.subList(0, 5), actual);
+    }
+
+    @Test
+    public void topLimit() {
+        List<MemPoolTracker.Entry> entries = entries();
+        Assert.assertTrue(MemPoolTracker.top(entries, null, MemPoolTracker.Sort.FEE, 0).isEmpty());
+        Assert.assertEquals(entries.size(), MemPoolTracker.top(entries, null, MemPoolTracker.Sort.FEE,
+                1000).size());
+        Assert.assertTrue(MemPoolTracker.top(entries, "Miner", MemPoolTracker.Sort.FEE, 10).isEmpty());
+    }
+}
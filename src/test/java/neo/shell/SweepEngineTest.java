@@ -0,0 +1,93 @@
+package neo.shell;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import neo.UInt160;
+
+public class SweepEngineTest {
+
+    private static final int BASE_SIZE = 100;
+
+    private static UInt160 account(int i) {
+        return UInt160.parse(String.format("0x%040x", i));
+    }
+
+    @Test
+    public void varIntSize() {
+        Assert.assertEquals(1, TransactionSizes.varIntSize(0xFC));
+        Assert.assertEquals(3, TransactionSizes.varIntSize(0xFD));
+        Assert.assertEquals(3, TransactionSizes.varIntSize(0xFFFF));
+        Assert.assertEquals(5, TransactionSizes.varIntSize(0x10000));
+        Assert.assertEquals(5, TransactionSizes.varIntSize(0xFFFFFFFFL));
+        Assert.assertEquals(9, TransactionSizes.varIntSize(0x100000000L));
+    }
+
+    @Test
+    public void splitEmpty() {
+        Assert.assertEquals(Collections.emptyList(), SweepEngine.split(new ArrayList<>(), new HashMap<>(),
+                BASE_SIZE, 1024));
+    }
+
+    @Test
+    public void splitSingleBatch() {
+        UInt160 a = account(1);
+        Map<UInt160, Integer> witnessSizes = new HashMap<>();
+        witnessSizes.put(a, 103);
+        Assert.assertEquals(Collections.singletonList(3), SweepEngine.split(Arrays.asList(a, a, a),
+                witnessSizes, BASE_SIZE, 102400));
+    }
+
+    @Test
+    public void splitUnderLimit() {
+        Map<UInt160, Integer> witnessSizes = new HashMap<>();
+        List<UInt160> owners = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            UInt160 account = account(i);
+            // 多签账户的见证人更大
+            witnessSizes.put(account, 103 + i * 66);
+            for (int j = 0; j < 150 + i * 40; j++) owners.add(account);
+        }
+        for (int max : new int[]{1024, 4096, 8192, 102400}) {
+            List<Integer> ends = SweepEngine.split(owners, witnessSizes, BASE_SIZE, max);
+            Assert.assertEquals(owners.size(), (int) ends.get(ends.size() - 1));
+            int start = 0;
+            for (int k = 0; k < ends.size(); k++) {
+                int end = ends.get(k);
+                Assert.assertTrue(end > start);
+                int size = size(owners.subList(start, end), witnessSizes);
+                Assert.assertTrue(String.format("%d > %d", size, max), size <= max);
+                // 除最后一笔外，再加一个输入就会超过上限
+                if (k < ends.size() - 1)
+                    Assert.assertTrue(size(owners.subList(start, end + 1), witnessSizes) > max);
+                start = end;
+            }
+        }
+    }
+
+    @Test
+    public void splitOversizedInput() {
+        UInt160 a = account(1);
+        Map<UInt160, Integer> witnessSizes = new HashMap<>();
+        witnessSizes.put(a, 103);
+        // 单个输入已超过上限时单独成一笔，不会死循环也不会丢弃
+        Assert.assertEquals(Arrays.asList(1, 2), SweepEngine.split(Arrays.asList(a, a), witnessSizes,
+                BASE_SIZE, 10));
+    }
+
+    private static int size(List<UInt160> owners, Map<UInt160, Integer> witnessSizes) {
+        Set<UInt160> signers = new HashSet<>(owners);
+        int witnessSize = 0;
+        for (UInt160 signer : signers) witnessSize += witnessSizes.get(signer);
+        return SweepEngine.transactionSize(BASE_SIZE, owners.size(), signers.size(), witnessSize);
+    }
+}
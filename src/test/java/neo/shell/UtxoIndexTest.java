@@ -0,0 +1,148 @@
+package neo.shell;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import neo.UInt256;
+import neo.csharp.Ushort;
+import neo.network.p2p.payloads.CoinReference;
+
+public class UtxoIndexTest {
+
+    private static CoinReference reference(int i) {
+        CoinReference reference = new CoinReference();
+        reference.prevHash = UInt256.parse(String.format("0x%064x", i));
+        reference.prevIndex = new Ushort(0);
+        return reference;
+    }
+
+    private static UtxoIndex.AssetCoins coins(long... values) {
+        UtxoIndex.AssetCoins coins = new UtxoIndex.AssetCoins();
+        for (int i = 0; i < values.length; i++) coins.add(reference(i), values[i]);
+        coins.flush();
+        return coins;
+    }
+
+    private static void assertSorted(UtxoIndex.AssetCoins coins) {
+        long total = 0;
+        for (int i = 0; i < coins.size; i++) {
+            if (i > 0) Assert.assertTrue(coins.values[i - 1] <= coins.values[i]);
+            total += coins.values[i];
+        }
+        Assert.assertEquals(total, coins.total);
+    }
+
+    @Test
+    public void addKeepsOrder() {
+        UtxoIndex.AssetCoins coins = coins(50, 10, 30, 10, 70);
+        Assert.assertEquals(5, coins.size);
+        Assert.assertArrayEquals(new long[]{10, 10, 30, 50, 70}, Arrays.copyOf(coins.values, coins.size));
+        Assert.assertEquals(170, coins.total);
+        // 未flush的币计入总额
+        coins.add(reference(5), 20);
+        Assert.assertEquals(190, coins.total);
+        coins.flush();
+        Assert.assertArrayEquals(new long[]{10, 10, 20, 30, 50, 70}, Arrays.copyOf(coins.values, coins.size));
+        Assert.assertEquals(reference(5), coins.references[2]);
+    }
+
+    @Test
+    public void remove() {
+        UtxoIndex.AssetCoins coins = coins(50, 10, 30, 10, 70);
+        coins.remove(reference(3), 10);
+        coins.remove(reference(4), 70);
+        Assert.assertEquals(90, coins.total);
+        coins.flush();
+        Assert.assertArrayEquals(new long[]{10, 30, 50}, Arrays.copyOf(coins.values, coins.size));
+        Assert.assertEquals(reference(1), coins.references[0]);
+    }
+
+    @Test
+    public void removePendingAndReAdd() {
+        UtxoIndex.AssetCoins coins = coins(10, 20);
+        // 加入后在flush前移除
+        coins.add(reference(2), 15);
+        coins.remove(reference(2), 15);
+        // 移除后在flush前加回
+        coins.remove(reference(0), 10);
+        coins.add(reference(0), 10);
+        coins.flush();
+        Assert.assertEquals(2, coins.size);
+        Assert.assertArrayEquals(new long[]{10, 20}, Arrays.copyOf(coins.values, coins.size));
+        Assert.assertEquals(30, coins.total);
+    }
+
+    @Test
+    public void randomBatches() {
+        Random random = new Random(1);
+        UtxoIndex.AssetCoins coins = new UtxoIndex.AssetCoins();
+        List<Integer> live = new ArrayList<>();
+        long[] values = new long[5000];
+        int next = 0;
+        for (int round = 0; round < 50; round++) {
+            for (int k = random.nextInt(100); k > 0; k--) {
+                values[next] = random.nextInt(1000);
+                coins.add(reference(next), values[next]);
+                live.add(next++);
+            }
+            for (int k = random.nextInt(60); k > 0 && !live.isEmpty(); k--) {
+                int i = live.remove(random.nextInt(live.size()));
+                coins.remove(reference(i), values[i]);
+            }
+            coins.flush();
+            assertSorted(coins);
+            Assert.assertEquals(live.size(), coins.size);
+            Set<CoinReference> expected = new HashSet<>();
+            for (int i : live) expected.add(reference(i));
+            Assert.assertEquals(expected, new HashSet<>(Arrays.asList(coins.references).subList(0, coins.size)));
+        }
+    }
+
+    @Test
+    public void lowerBound() {
+        UtxoIndex.AssetCoins coins = coins(10, 20, 20, 30);
+        Assert.assertEquals(0, coins.lowerBound(5));
+        Assert.assertEquals(0, coins.lowerBound(10));
+        Assert.assertEquals(1, coins.lowerBound(11));
+        Assert.assertEquals(1, coins.lowerBound(20));
+        Assert.assertEquals(3, coins.lowerBound(21));
+        Assert.assertEquals(4, coins.lowerBound(31));
+    }
+
+    private static List<Long> values(UtxoIndex.AssetCoins coins, UtxoIndex.Selection selection) {
+        List<Long> list = new ArrayList<>();
+        for (CoinReference reference : selection.references)
+            for (int i = 0; i < coins.size; i++)
+                if (coins.references[i].equals(reference)) list.add(coins.values[i]);
+        Collections.sort(list);
+        return list;
+    }
+
+    @Test
+    public void select() {
+        UtxoIndex.AssetCoins coins = coins(1, 5, 10, 50, 100);
+        Assert.assertNull(coins.select(167));
+        UtxoIndex.Selection all = coins.select(166);
+        Assert.assertEquals(5, all.references.length);
+        Assert.assertEquals(166, all.value.getData());
+        // 从大到小取100、50、10，再补一个不小于剩余2的最小的币
+        UtxoIndex.Selection selection = coins.select(162);
+        Assert.assertEquals(Arrays.asList(5L, 10L, 50L, 100L), values(coins, selection));
+        Assert.assertEquals(165, selection.value.getData());
+        // 恰好凑齐时不补币
+        selection = coins.select(110);
+        Assert.assertEquals(Arrays.asList(10L, 100L), values(coins, selection));
+        Assert.assertEquals(110, selection.value.getData());
+        // 最大的币已超过金额时取不小于金额的最小的币
+        Assert.assertEquals(Collections.singletonList(100L), values(coins, coins.select(60)));
+        Assert.assertEquals(Collections.singletonList(50L), values(coins, coins.select(15)));
+    }
+}